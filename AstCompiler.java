@@ -0,0 +1,644 @@
+package compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Compiles one .jack-file in two passes instead of one, used when JackCompiler.astMode is set: first the whole class is parsed into
+ * a JackAst, then the VM-code is generated by walking that tree. The generated code evaluates expressions in the same order and uses
+ * the same calling convention as CompilationEngine's, but it isn't the same code: labels are named differently and ifs / whiles aren't
+ * compiled in a jump context. Since every subroutine is known completely before any of its code is written, the code generation can 
+ * look ahead, e.g. array stores check whether their value contains a call before deciding on the order of evaluation. Records all 
+ * declarations, calls and classes used on the registry, just like CompilationEngine.
+ * Every subroutine is parsed into a tree of its own and compiled on its own (cf. compileSubroutines), which also makes it the unit of
+ * error recovery: a subroutine isn't compiled any further after its first error, but the other subroutines still are, so one error 
+ * per subroutine is reported (CompilationEngine also recovers within a subroutine, cf. CompilationEngine.recoverAtStatement).
+ * Only reports syntax errors, undeclared and duplicate variables, 'subroutineName(...)' called from a function and subroutines declared
+ * twice itself, conflicting uses of subroutines and missing declarations of subroutines and classes are reported by JackCompiler once 
+ * all files are compiled (cf. ProgramRegistry.getConflicts / getMissingSubroutines). With JackCompiler.parallelSubroutines set, the subroutines of a class are parsed and compiled in parallel */
+public class AstCompiler {
+	/** the threads the subroutines are compiled on, created the first time they're needed and again whenever their settings change (cf. getExecutor) */
+	private static ExecutorService executor;
+	/** the JackCompiler.parallelSubroutines and JackCompiler.stackSize executor has been created with */
+	private static int executorThreads;
+	private static long executorStackSize;
+	
+	private JackAst ast;
+	private String outputFile;
+	private VMWriter vmWriter;
+	private SymbolTable classLevelSymbolTable;
+	private SymbolTable subroutineLevelSymbolTable;
+	private ProgramRegistry registry;
+	private String className;
+	/** name and kind of the subroutine that's currently being compiled */
+	private String subroutineName;
+	private ProgramRegistry.SubroutineKind subroutineKind;
+	/** makes the labels of every if / while unique within the subroutine */
+	private int labelIndex;
+	/** was there an error in this file (or this subroutine)? If so nothing of it is compiled anymore */
+	private boolean error;
+	/** the errors, i.e. the first one of the class itself or of each subroutine, printed once the whole file is compiled */
+	private ArrayList<String> errorMessages;
+	/** the errors as Diagnostics, which JackCompiler collects like the ones of CompilationEngine */
+	private ArrayList<Diagnostic> diagnostics;
+	/** the amount of nodes and their memory of every tree the file has been parsed into */
+	private int nNodes;
+	private int nNodeBytes;
+	/** the operators (as their Operator.ordinal) that are still to be applied by the expressions currently being compiled, 
+	 * cf. CompilationEngine.operatorStack */
+	private int[] operatorStack;
+	private int operatorStackSize;
+	/** table of (string literal, index) of the class's string pool, null unless JackCompiler.poolStringLiterals is set (cf. 
+	 * CompilationEngine.compileStringPool). It's filled from the tokens before anything is compiled, in the order the literals first 
+	 * appear (the order CompilationEngine finds them in), so the subroutines compiled in parallel agree on the indices */
+	private HashMap<String,Integer> stringPool;
+	private ArrayList<String> stringPoolLiterals;
+
+	AstCompiler(String inputFile, String outputFile, JackTokenizer tokenizer, ProgramRegistry registry) throws IOException {
+		this(inputFile, outputFile, new JackAst.Tokens(tokenizer), registry);
+	}
+	
+	/** compiles the tokens of inputFile, which have been read already. JackTokenizer can only read one file at a time, but the 
+	 * compilation itself only shares the registry, so several classes can be compiled from their tokens at once */
+	AstCompiler(String inputFile, String outputFile, JackAst.Tokens tokens, ProgramRegistry registry) throws IOException {
+		this.outputFile = outputFile;
+		vmWriter = new VMWriter(outputFile);
+		classLevelSymbolTable = new SymbolTable();
+		subroutineLevelSymbolTable = new SymbolTable(classLevelSymbolTable);
+		this.registry = registry;
+		subroutineName = "";
+		operatorStack = new int[16];
+		errorMessages = new ArrayList<String>();
+		diagnostics = new ArrayList<Diagnostic>();
+		className = new File(inputFile).getName().replace(".jack", "");
+		ast = new JackAst(className);
+		
+		if(JackCompiler.poolStringLiterals) {
+			collectStringLiterals(tokens);
+		}
+		int[] subroutines = JackAst.findSubroutines(tokens);
+		if(subroutines != null) {
+			compileSubroutines(tokens, subroutines);
+		}
+		else {
+			/* the braces don't match up, parsing the whole class at once reports where */
+			if(!ast.parseClass(tokens, null)) {
+				syntaxError(ast);
+			} else {
+				compileClass(0);
+			}
+			countNodes(ast);
+		}
+		if(!error) {
+			compileStringPool();
+		}
+		for(String errorMessage : errorMessages) {
+			System.out.println(errorMessage);
+		}
+	}
+	
+	/** compiles one subroutine of classCompiler's class on its own, with its own tree, VMWriter and subroutine-level symbol-table.
+	 * The class-level symbol-table is classCompiler's, which is only read from by now. Doesn't record the subroutine's declaration,
+	 * cf. compileSubroutines */
+	private AstCompiler(AstCompiler classCompiler, JackAst.Tokens tokens, int from, int to) throws IOException {
+		outputFile = classCompiler.outputFile;
+		vmWriter = new VMWriter(outputFile);
+		classLevelSymbolTable = classCompiler.classLevelSymbolTable;
+		subroutineLevelSymbolTable = new SymbolTable(classLevelSymbolTable);
+		registry = classCompiler.registry;
+		className = classCompiler.className;
+		stringPool = classCompiler.stringPool;
+		subroutineName = "";
+		operatorStack = new int[16];
+		errorMessages = new ArrayList<String>();
+		diagnostics = new ArrayList<Diagnostic>();
+		ast = new JackAst(className);
+		if(!ast.parseSubroutine(tokens, from, to)) {
+			syntaxError(ast);
+		}
+		countNodes(ast);
+		if(!error) {
+			defineParameters(ast.getRoot());
+			compileSubroutineBody(ast.getRoot());
+		}
+	}
+
+	public VMWriter getVMWriter() {
+		return vmWriter;
+	}
+
+	/** the amount of nodes of every tree the file has been parsed into */
+	public int getNodeCount() {
+		return nNodes;
+	}
+
+	/** memory used by the nodes of every tree the file has been parsed into (cf. JackAst.getNodeBytes) */
+	public int getNodeBytes() {
+		return nNodeBytes;
+	}
+
+	/** did this file compile without errors? If not, its VM-code is incomplete and mustn't be written */
+	public boolean succeeded() {
+		return !error;
+	}
+
+	/** the errors of this file, i.e. the first one of the class itself or of each subroutine */
+	public ArrayList<Diagnostic> getDiagnostics() {
+		return diagnostics;
+	}
+
+	private void compileClass(int classNode) throws IOException {
+		declareClass(classNode);
+		for(int child = ast.firstChild(classNode); child >= 0 && !error; child = ast.nextSibling(child)) {
+			if(ast.kind(child) == JackAst.SUBROUTINE_DEC) {
+				compileSubroutineDec(child);
+			}
+		}
+	}
+	
+	/** parses and compiles every subroutine (found by JackAst.findSubroutines, without parsing anything) into a tree of its own (cf. the 
+	 * private constructor), once the class itself and its class variables are parsed and defined. An error in one subroutine then
+	 * doesn't keep the others from being compiled, so their errors are reported as well. With JackCompiler.parallelSubroutines set, 
+	 * the subroutines are compiled on the executor's threads, since one huge class would otherwise be compiled on one single thread 
+	 * while all the others are idle. Either way their declarations are recorded and their code is appended to this VMWriter in the 
+	 * order of the source, so the output (and the order of the errors) is the same as if they had been compiled one after the other */
+	private void compileSubroutines(JackAst.Tokens tokens, int[] subroutines) throws IOException {
+		boolean parsed = ast.parseClass(tokens, subroutines);
+		countNodes(ast);
+		if(!parsed) {
+			syntaxError(ast);
+			return;
+		}
+		declareClass(0);
+		if(error) {
+			return;
+		}
+		
+		ArrayList<Future<AstCompiler>> tasks = null;
+		if(JackCompiler.parallelSubroutines > 1 && subroutines.length > 2) {
+			tasks = new ArrayList<Future<AstCompiler>>();
+			for(int subroutine = 0; subroutine < subroutines.length; subroutine += 2) {
+				int from = subroutines[subroutine];
+				int to = subroutines[subroutine + 1];
+				tasks.add(getExecutor().submit(() -> new AstCompiler(this, tokens, from, to)));
+			}
+		}
+		for(int subroutine = 0; subroutine < subroutines.length; subroutine += 2) {
+			AstCompiler subroutineCompiler;
+			if(tasks == null) {
+				subroutineCompiler = new AstCompiler(this, tokens, subroutines[subroutine], subroutines[subroutine + 1]);
+			} else {
+				try {
+					subroutineCompiler = tasks.get(subroutine / 2).get();
+				} catch(InterruptedException | ExecutionException e) {
+					throw new IOException("Compiling a subroutine of '" + className + "' failed", e);
+				}
+			}
+			nNodes += subroutineCompiler.nNodes;
+			nNodeBytes += subroutineCompiler.nNodeBytes;
+			if(!subroutineCompiler.error) {
+				subroutineCompiler.declareSubroutine(subroutineCompiler.ast.getRoot());
+			}
+			if(subroutineCompiler.error) {
+				error = true;
+				errorMessages.addAll(subroutineCompiler.errorMessages);
+				diagnostics.addAll(subroutineCompiler.diagnostics);
+			} else if(!error) {
+				vmWriter.writeCommands(subroutineCompiler.vmWriter);
+			}
+		}
+	}
+	
+	/** checks the class-name, records the class on the registry and defines its class variables */
+	private void declareClass(int classNode) {
+		if(!ast.text(classNode).equals(className)) {
+			error(classNode, "Class-name must be the same as file-name. Please change the class-name");
+			return;
+		}
+		registry.declareClass(className);
+
+		for(int child = ast.firstChild(classNode); child >= 0; child = ast.nextSibling(child)) {
+			if(ast.kind(child) == JackAst.CLASS_VAR_DEC) {
+				defineVariables(classLevelSymbolTable, child, ast.text(child).equals("static") ? SymbolTable.Kind.STATIC : SymbolTable.Kind.FIELD);
+			}
+		}
+		registry.declareClassVariables(className, classLevelSymbolTable);
+	}
+
+	/** defines every varName of a CLASS_VAR_DEC / VAR_DEC node (NAME (type), NAME (varName)+) as 'kind' on symbolTable, a varName
+	 * can't be declared twice (a local not even with the name of a parameter, like in CompilationEngine) */
+	private void defineVariables(SymbolTable symbolTable, int node, SymbolTable.Kind kind) {
+		int typeNode = ast.firstChild(node);
+		useType(ast.text(typeNode));
+		for(int nameNode = ast.nextSibling(typeNode); nameNode >= 0; nameNode = ast.nextSibling(nameNode)) {
+			if(symbolTable.nameExists(ast.text(nameNode))) {
+				error(nameNode, "Compilation Error: Duplicate variable '" + ast.text(nameNode) + "'");
+			} else {
+				symbolTable.define(ast.text(nameNode), ast.text(typeNode), kind);
+			}
+		}
+	}
+
+	private void compileSubroutineDec(int subroutineDec) throws IOException {
+		defineParameters(subroutineDec);
+		declareSubroutine(subroutineDec);
+		if(!error) {
+			compileSubroutineBody(subroutineDec);
+		}
+	}
+	
+	/** starts the subroutine, i.e. resets the subroutine-level symbol-table and defines the parameters (and 'this' for methods) on it */
+	private void defineParameters(int subroutineDec) {
+		int kindNode = ast.firstChild(subroutineDec);
+		int parameterList = ast.nextSibling(ast.nextSibling(kindNode));
+		subroutineName = ast.text(subroutineDec);
+		subroutineKind = ProgramRegistry.SubroutineKind.fromKeyword(ast.text(kindNode));
+		labelIndex = 0;
+
+		subroutineLevelSymbolTable.startSubroutine();
+		if(subroutineKind == ProgramRegistry.SubroutineKind.METHOD) {
+			subroutineLevelSymbolTable.define("this", className, SymbolTable.Kind.ARG);
+		}
+		for(int typeNode = ast.firstChild(parameterList); typeNode >= 0; typeNode = ast.nextSibling(ast.nextSibling(typeNode))) {
+			useType(ast.text(typeNode));
+			subroutineLevelSymbolTable.define(ast.text(ast.nextSibling(typeNode)), ast.text(typeNode), SymbolTable.Kind.ARG);
+		}
+	}
+	
+	/** records the declaration of the subroutine (whose parameters have to be defined already) on the registry, it can't be declared twice */
+	private void declareSubroutine(int subroutineDec) {
+		int kindNode = ast.firstChild(subroutineDec);
+		int returnTypeNode = ast.nextSibling(kindNode);
+		ProgramRegistry.SubroutineKind kind = ProgramRegistry.SubroutineKind.fromKeyword(ast.text(kindNode));
+		int nArgs = subroutineLevelSymbolTable.getArgumentIndex() + 1;
+		ProgramRegistry.Subroutine previous = registry.record(className, subroutineName, kind, nArgs, true, ast.text(returnTypeNode));
+		if(previous != null && previous.isDeclared()) {
+			error(subroutineDec, "Subroutine '" + className + "." + subroutineName + "' has been declared twice");
+		}
+	}
+	
+	/** compiles the subroutine's var declarations and statements, whose parameters have to be defined already */
+	private void compileSubroutineBody(int subroutineDec) throws IOException {
+		int kindNode = ast.firstChild(subroutineDec);
+		int returnTypeNode = ast.nextSibling(kindNode);
+		int parameterList = ast.nextSibling(returnTypeNode);
+		ProgramRegistry.SubroutineKind kind = ProgramRegistry.SubroutineKind.fromKeyword(ast.text(kindNode));
+		
+		/* the whole subroutine is known already, so nLocals is known before any of the statements are compiled */
+		int statements = -1;
+		for(int child = ast.nextSibling(parameterList); child >= 0; child = ast.nextSibling(child)) {
+			if(ast.kind(child) == JackAst.VAR_DEC) {
+				defineVariables(subroutineLevelSymbolTable, child, SymbolTable.Kind.VAR);
+			} else {
+				statements = child;
+			}
+		}
+		vmWriter.writeFunction(className + "." + subroutineName, subroutineLevelSymbolTable.getLocalIndex() + 1);
+
+		if(kind == ProgramRegistry.SubroutineKind.CONSTRUCTOR) {
+			vmWriter.writePush(VMWriter.Segment.CONST, classLevelSymbolTable.getFieldIndex() + 1);
+			vmWriter.writeCall("Memory.alloc", 1);
+			vmWriter.writePop(VMWriter.Segment.POINTER, 0);
+		} else if(kind == ProgramRegistry.SubroutineKind.METHOD) {
+			vmWriter.writePush(VMWriter.Segment.ARG, 0);
+			vmWriter.writePop(VMWriter.Segment.POINTER, 0);
+		}
+		compileStatements(statements, ast.text(returnTypeNode).equals("void"));
+	}
+
+	private void compileStatements(int statements, boolean isVoid) throws IOException {
+		for(int statement = ast.firstChild(statements); statement >= 0 && !error; statement = ast.nextSibling(statement)) {
+			switch(ast.kind(statement)) {
+			case(JackAst.LET):
+				compileLet(statement);
+				break;
+			case(JackAst.IF):
+				compileIf(statement, isVoid);
+				break;
+			case(JackAst.WHILE):
+				compileWhile(statement, isVoid);
+				break;
+			case(JackAst.DO):
+				compileTerm(ast.firstChild(statement));
+				vmWriter.writePop(VMWriter.Segment.TEMP, 0);
+				break;
+			case(JackAst.RETURN):
+				if(ast.firstChild(statement) >= 0) {
+					compileExpression(ast.firstChild(statement));
+				}
+				if(isVoid) {
+					vmWriter.writePush(VMWriter.Segment.CONST, 0);
+				}
+				vmWriter.writeReturn();
+				break;
+			}
+		}
+	}
+
+	/** for 'let varName[index] = value;' the value is compiled first and the address last (so no temp is needed), unless one of
+	 * them contains a call that might have side effects on the other one */
+	private void compileLet(int let) throws IOException {
+		String varName = ast.text(let);
+		int first = ast.firstChild(let);
+		int value = ast.nextSibling(first);
+		if(value < 0) {
+			compileExpression(first);
+			writeVariable(false, let, varName);
+		} else if(!containsCall(first) && !containsCall(value)) {
+			compileExpression(value);
+			writeVariable(true, let, varName);
+			compileExpression(first);
+			vmWriter.writeArithmetic(Operator.ADD);
+			vmWriter.writePop(VMWriter.Segment.POINTER, 1);
+			vmWriter.writePop(VMWriter.Segment.THAT, 0);
+		} else {
+			writeVariable(true, let, varName);
+			compileExpression(first);
+			vmWriter.writeArithmetic(Operator.ADD);
+			compileExpression(value);
+			vmWriter.writePop(VMWriter.Segment.TEMP, 0);
+			vmWriter.writePop(VMWriter.Segment.POINTER, 1);
+			vmWriter.writePush(VMWriter.Segment.TEMP, 0);
+			vmWriter.writePop(VMWriter.Segment.THAT, 0);
+		}
+	}
+
+	private void compileIf(int ifStatement, boolean isVoid) throws IOException {
+		int condition = ast.firstChild(ifStatement);
+		int thenStatements = ast.nextSibling(condition);
+		int elseStatements = ast.nextSibling(thenStatements);
+		String ELSE = "IF_ELSE." + labelIndex;
+		String END_IF = "IF_END." + labelIndex;
+		labelIndex++;
+
+		compileExpression(condition);
+		vmWriter.writeArithmetic(Operator.NOT);
+		vmWriter.writeIf(elseStatements >= 0 ? ELSE : END_IF);
+		compileStatements(thenStatements, isVoid);
+		if(elseStatements >= 0) {
+			vmWriter.writeGoto(END_IF);
+			vmWriter.writeLabel(ELSE);
+			compileStatements(elseStatements, isVoid);
+		}
+		vmWriter.writeLabel(END_IF);
+	}
+
+	private void compileWhile(int whileStatement, boolean isVoid) throws IOException {
+		int condition = ast.firstChild(whileStatement);
+		String LOOP = "WHILE_LOOP." + labelIndex;
+		String END_LOOP = "WHILE_END." + labelIndex;
+		labelIndex++;
+
+		vmWriter.writeLabel(LOOP);
+		compileExpression(condition);
+		vmWriter.writeArithmetic(Operator.NOT);
+		vmWriter.writeIf(END_LOOP);
+		compileStatements(ast.nextSibling(condition), isVoid);
+		vmWriter.writeGoto(LOOP);
+		vmWriter.writeLabel(END_LOOP);
+	}
+
+	/** evaluates 'term (op term)*' exactly like CompilationEngine.compileExpression: '*' and '/' are applied right away, 'a - b' is
+	 * compiled as 'a + (-b)' and all the other operators are applied from right to left once all the terms have been pushed */
+	private void compileExpression(int expression) throws IOException {
+		int operatorStackBase = operatorStackSize;
+		int term = ast.firstChild(expression);
+		compileTerm(term);
+		for(int operator = ast.nextSibling(term); operator >= 0 && !error; operator = ast.nextSibling(term)) {
+			Operator op = Operator.binary(ast.text(operator));
+			if(op == Operator.SUB) {
+				pushOperator(Operator.ADD);
+			} else if(op != Operator.MULTIPLY && op != Operator.DIVIDE) {
+				pushOperator(op);
+			}
+			term = ast.nextSibling(operator);
+			compileTerm(term);
+			if(op == Operator.SUB) {
+				vmWriter.writeArithmetic(Operator.NEG);
+			} else if(op == Operator.MULTIPLY || op == Operator.DIVIDE) {
+				vmWriter.writeArithmetic(op);
+			}
+		}
+		while(operatorStackSize > operatorStackBase) {
+			operatorStackSize--;
+			vmWriter.writeArithmetic(Operator.fromOrdinal(operatorStack[operatorStackSize]));
+		}
+	}
+
+	private void pushOperator(Operator operator) {
+		if(operatorStackSize == operatorStack.length) {
+			operatorStack = Arrays.copyOf(operatorStack, 2 * operatorStack.length);
+		}
+		operatorStack[operatorStackSize] = operator.ordinal();
+		operatorStackSize++;
+	}
+
+	private void compileTerm(int term) throws IOException {
+		switch(ast.kind(term)) {
+		case(JackAst.INT_CONSTANT):
+			vmWriter.writePush(VMWriter.Segment.CONST, ast.intValue(term));
+			break;
+		case(JackAst.STRING_CONSTANT):
+			if(stringPool != null) {
+				vmWriter.writeCall(className + ".StringLiteral." + stringPool.get(ast.text(term)), 0);
+			} else {
+				writeStringConstruction(ast.text(term));
+			}
+			break;
+		case(JackAst.KEYWORD_CONSTANT):
+			if(ast.text(term).equals("this")) {
+				vmWriter.writePush(VMWriter.Segment.POINTER, 0);
+			} else {
+				vmWriter.writePush(VMWriter.Segment.CONST, 0);
+				if(ast.text(term).equals("true")) {
+					vmWriter.writeArithmetic(Operator.NOT);
+				}
+			}
+			break;
+		case(JackAst.VARIABLE):
+			writeVariable(true, term, ast.text(term));
+			break;
+		case(JackAst.ARRAY_ACCESS):
+			writeVariable(true, term, ast.text(term));
+			compileExpression(ast.firstChild(term));
+			vmWriter.writeArithmetic(Operator.ADD);
+			vmWriter.writePop(VMWriter.Segment.POINTER, 1);
+			vmWriter.writePush(VMWriter.Segment.THAT, 0);
+			break;
+		case(JackAst.CALL):
+		case(JackAst.QUALIFIED_CALL):
+			compileSubroutineCall(term);
+			break;
+		case(JackAst.UNARY):
+			compileTerm(ast.firstChild(term));
+			vmWriter.writeArithmetic(Operator.unary(ast.text(term)));
+			break;
+		case(JackAst.EXPRESSION):
+			compileExpression(term);
+			break;
+		}
+	}
+
+	/** subroutineName(...) is a method called on this (so it can't be called from a function), varName.subroutineName(...) a method 
+	 * called on varName, className.subroutineName(...) a function or constructor */
+	private void compileSubroutineCall(int call) throws IOException {
+		String calledClassName = className;
+		ProgramRegistry.SubroutineKind kind = ProgramRegistry.SubroutineKind.METHOD;
+		int nArgs = 0;
+		int argument = ast.firstChild(call);
+		if(ast.kind(call) == JackAst.CALL) {
+			if(subroutineKind == ProgramRegistry.SubroutineKind.FUNCTION) {
+				error(call, "Cannot perform a simpleSubroutineCall (i.e. a function-call without a specified objectName or className seperated "
+							+ "from the subroutineName by a '.') from within a 'function'.");
+			}
+			vmWriter.writePush(VMWriter.Segment.POINTER, 0);
+			nArgs++;
+		} else {
+			String receiver = ast.text(argument);
+			SymbolTable.Entry object = subroutineLevelSymbolTable.resolve(receiver);
+			if(object != null) {
+				vmWriter.writePush(object.getKind().getSegment(), object.getIndex());
+				calledClassName = object.getType();
+				nArgs++;
+			} else {
+				calledClassName = receiver;
+				kind = ProgramRegistry.SubroutineKind.FUNCTION;
+				registry.useClass(calledClassName);
+			}
+			argument = ast.nextSibling(argument);
+		}
+		for(; argument >= 0; argument = ast.nextSibling(argument)) {
+			compileExpression(argument);
+			nArgs++;
+		}
+		registry.record(calledClassName, ast.text(call), kind, nArgs, false, null);
+		vmWriter.writeCall(calledClassName + "." + ast.text(call), nArgs);
+	}
+
+	/** writes a push (or pop, if push is false) of the variable varName (node is just there for the error message) */
+	private void writeVariable(boolean push, int node, String varName) throws IOException {
+		SymbolTable.Entry variable = subroutineLevelSymbolTable.resolve(varName);
+		if(variable == null) {
+			error(node, "Compilation Error: Variable '" + varName + "' has not been declared.");
+		} else if(push) {
+			vmWriter.writePush(variable.getKind().getSegment(), variable.getIndex());
+		} else {
+			vmWriter.writePop(variable.getKind().getSegment(), variable.getIndex());
+		}
+	}
+
+
+	/** writes the VM-commands that construct a new String-object holding 'string' and leave its base address on top of the stack */
+	private void writeStringConstruction(String string) throws IOException {
+		vmWriter.writePush(VMWriter.Segment.CONST, string.length());
+		vmWriter.writeCall("String.new", 1);
+		for(char character : string.toCharArray()) {
+			vmWriter.writePush(VMWriter.Segment.CONST, (int)character);
+			vmWriter.writeCall("String.appendChar", 2);
+		}
+	}
+	
+	/** fills the string pool with every string literal of the tokens, in the order they first appear */
+	private void collectStringLiterals(JackAst.Tokens tokens) {
+		stringPool = new HashMap<String,Integer>();
+		stringPoolLiterals = new ArrayList<String>();
+		for(int index = 0; index < tokens.size(); index++) {
+			String token = tokens.get(index);
+			if(token.length() >= 2 && token.charAt(0) == '"') {
+				String literal = token.substring(1, token.length() - 1);
+				if(!stringPool.containsKey(literal)) {
+					stringPool.put(literal, stringPoolLiterals.size());
+					stringPoolLiterals.add(literal);
+				}
+			}
+		}
+	}
+	
+	/** writes the pool function of every string literal of the class, exactly like CompilationEngine.compileStringPool */
+	private void compileStringPool() throws IOException {
+		if(stringPool == null) {
+			return;
+		}
+		int nStatics = classLevelSymbolTable.varCount(SymbolTable.Kind.STATIC) + 1;
+		for(int poolIndex = 0; poolIndex < stringPoolLiterals.size(); poolIndex++) {
+			String functionName = className + ".StringLiteral." + poolIndex;
+			String READY = functionName + ".READY";
+			vmWriter.writeFunction(functionName, 0);
+			vmWriter.writePush(VMWriter.Segment.STATIC, nStatics + poolIndex);
+			vmWriter.writeIf(READY);
+			writeStringConstruction(stringPoolLiterals.get(poolIndex));
+			vmWriter.writePop(VMWriter.Segment.STATIC, nStatics + poolIndex);
+			vmWriter.writeLabel(READY);
+			vmWriter.writePush(VMWriter.Segment.STATIC, nStatics + poolIndex);
+			vmWriter.writeReturn();
+		}
+	}
+
+
+	/** Helper functions **/
+	/** records type as a used class on the registry, unless it's a primitive type */
+	private void useType(String type) {
+		if(!type.equals("int") && !type.equals("char") && !type.equals("boolean")) {
+			registry.useClass(type);
+		}
+	}
+
+	/** does the subtree of node contain a subroutine call (other than '*' / '/', cf. CompilationEngine.arrayStoreCanBeReordered)? */
+	private boolean containsCall(int node) {
+		if(ast.kind(node) == JackAst.CALL || ast.kind(node) == JackAst.QUALIFIED_CALL || ast.kind(node) == JackAst.STRING_CONSTANT) {
+			return true;
+		}
+		for(int child = ast.firstChild(node); child >= 0; child = ast.nextSibling(child)) {
+			if(containsCall(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void error(int node, String message) {
+		if(!error) {
+			error = true;
+			errorMessages.add(message + "\n" + "In '" + className + "' at line: " + ast.line(node) + " in subroutine '" + subroutineName + "'");
+			diagnostics.add(new Diagnostic(className, ast.line(node), ast.text(node), message));
+		}
+	}
+	
+	/** records the syntax error the tree has been left with */
+	private void syntaxError(JackAst tree) {
+		error = true;
+		errorMessages.add(tree.getErrorMessage());
+		diagnostics.add(tree.getError());
+	}
+	
+	private void countNodes(JackAst ast) {
+		nNodes += ast.getNodeCount();
+		nNodeBytes += ast.getNodeBytes();
+	}
+	
+	/** the executor, which is created again (and the old one shut down) whenever JackCompiler.parallelSubroutines or JackCompiler.stackSize 
+	 * have changed since the last translate, so a long-lived JVM always compiles with the current settings */
+	private static synchronized ExecutorService getExecutor() {
+		int threads = JackCompiler.parallelSubroutines;
+		long stackSize = Math.max(JackCompiler.stackSize, 0);
+		if(executor == null || executorThreads != threads || executorStackSize != stackSize) {
+			if(executor != null) {
+				executor.shutdown();
+			}
+			executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(null, runnable, "AstCompiler", stackSize);
+				thread.setDaemon(true);
+				return thread;
+			});
+			executorThreads = threads;
+			executorStackSize = stackSize;
+		}
+		return executor;
+	}
+}
@@ -1,9 +1,11 @@
 package compiler;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Set;
-import java.util.Stack;
 
 /* The Jack language has basically no typing and no type-checking. The only types that are being checked are class-types, 
  * all primitive types behave exactly the same 'int', 'char', 'boolean' are effectively just buzzwords that might help the user to just
@@ -13,102 +15,153 @@ import java.util.Stack;
 
 /** Compiles one .jack-file. Gets tokenized inputs and compiles them with the help of two symbol tables. Writes the generated vm-commands to a .vm output-file */
 public class CompilationEngine {
+	/** the kinds of identifiers compileIdentifier handles: class-names (in a class declaration, as a type, or in 'className.foo()'),
+	 * subroutine-names and the names of the four kinds of variables (cf. SymbolTable.Kind) */
+	private enum IdentifierKind {
+		CLASS_NAME, CLASS_NAME_AS_TYPE, CLASS_NAME_IN_SUBROUTINE_CALL, SUBROUTINE_NAME, STATIC, FIELD, VAR, ARG;
+		
+		/** the identifier kind of a variable of the given kind */
+		static IdentifierKind of(SymbolTable.Kind kind) {
+			switch(kind) {
+			case STATIC: return STATIC;
+			case FIELD: return FIELD;
+			case VAR: return VAR;
+			default: return ARG;
+			}
+		}
+	}
+	
+	/** whether a subroutine is being called or declared */
+	private enum SubroutineUse {CALLED, DECLARED}
+	
 	/** tokenizes the input */
-	private static JackTokenizer tokenizer;
+	private JackTokenizer tokenizer;
 	/** writes VM-commands to output-file */
-	private static VMWriter vmWriter;
+	private VMWriter vmWriter;
 	/** symbol-table that keeps track of current 'static' and 'field' variables */
-	private static SymbolTable classLevelSymbolTable;
+	private SymbolTable classLevelSymbolTable;
 	/** symbol-table that keeps track of current 'local' (i.e. 'var') and 'argument' (i.e. parameters) variables */
-	private static SymbolTable subroutineLevelSymbolTable;
+	private SymbolTable subroutineLevelSymbolTable;
 	/** the current token read by the tokenizer */
-	private static String token;
+	private String token;
 	/** the name of the currently processed identifier */
-	private static String currentIdentifierName;
+	private String currentIdentifierName;
 	/** the type (int, boolean, className) of the currently processed identifier */
-	private static String currentIdentifierType;
-	/** the kind (static, field, local, argument) of the currently processed identifier */
-	private static String currentIdentifierKind;
+	private String currentIdentifierType;
+	/** the kind (className, subroutineName, static, field, local, argument) of the currently processed identifier */
+	private IdentifierKind currentIdentifierKind;
 	/** 'true' if currently processed variable is being declared, 'false' if it's being used */
-	private static boolean currentVariableIsBeingDeclared;
+	private boolean currentVariableIsBeingDeclared;
 	/** name of the currently processed identifier that is some class-name (not necessarily the same class-name of the class we're currently processing)
 	 * i.e. represents 'className' in these expressions: 'class className', 'var className someObj', 'className.Foo(expressionList)'. Updates itself everytime
 	 * the compiler reads one of these expressions */
-	private static String currentlyProcessedClassName;
+	private String currentlyProcessedClassName;
 	/** name of the currently processed .jack-file */
-	private static String currentFileName;
-	/** table of (currentlyProcessedClassName, CLASSNAME_DECLARED or CLASSNAME_NOT_DECLARED): 
-	 * 
-	 * puts (currentlyProcessedClassName, CLASSNAME_DECLARED) upon scanning an actual class-name in a class declaration, 
-	 * puts (currentlyProcessedClassName, CLASSNAME_NOT_DECLARED) upon scanning something like 'var className obj;'
-	 * puts (currentlyProcessedClassName, CLASSNAME_NOT_DECLARED) upon scanning something like 'do className.foo();'
-	 * 
-	 * updates CLASSNAME_NOT_DECLARED to CLASSNAME_DECLARED when it scans the corresponding class declaration 
-	 * of the previously used className in the object-variable declaration
-	 * if there is one or more buckets whose value is 'CLASSNAME_NOT_DECLARED' the end of the compilation process 
-	 * the compiler will throw a compilation error */
-	private static HashMap<String,String> classNameTable;
+	private String currentFileName;
 	/** name of the currently processed subroutine */
-	private static String currentlyProcessedSubroutineName;
+	private String currentlyProcessedSubroutineName;
 	/** name of the subroutine we're currently inside of */
-	private static String currentSubroutineName;
+	private String currentSubroutineName;
 	/** kind of the currently called or declared subroutine, i.e. 'constructor', 'method' or 'function' */
-	private static String currentSubroutineKind;
-	/** "CALLED" if currently processed subroutine is being called, "DECLARED" if currently processed subroutine is being declared */
-	private static String currentSubroutineCalledOrDeclared;
-	/** table of (subroutineName, (subroutineKind, "CALLED" or "DECLARED"), nArgs), where subroutineKind is either 'constructor', 'method' or 'function' 
-	 * this helps check if a certain subroutine is the same kind as it's being called as (i.e. a subroutine that's declared as a 'function' can't
-	 * be a called as a 'method', also checks at the end of compilation that all called subroutines have actually been declared, else its gonna throw
-	 * a compilation error */
-	private static HashMap<String,String[]> subroutineTable;
+	private ProgramRegistry.SubroutineKind currentSubroutineKind;
+	/** CALLED if currently processed subroutine is being called, DECLARED if currently processed subroutine is being declared */
+	private SubroutineUse currentSubroutineCalledOrDeclared;
+	/** every subroutine and class of the program that has been declared or used so far (cf. ProgramRegistry):
+	 * 
+	 * records a subroutine as CALLED / DECLARED along with its kind ('constructor', 'method' or 'function') and nArgs, which helps check 
+	 * that a certain subroutine is the same kind as it's being called as (i.e. a subroutine that's declared as a 'function' can't be called
+	 * as a 'method') and that all called subroutines have actually been declared at the end of the compilation.
+	 * 
+	 * records a class as declared upon scanning an actual class-name in a class declaration, and as used (i.e. not declared yet) upon scanning
+	 * something like 'var className obj;' or 'do className.foo();'. If there are still classes that have only been used at the end of the 
+	 * compilation process, the compiler will throw a compilation error */
+	private ProgramRegistry registry;
+	/** the registry of the program JackCompiler is translating, handed to every CompilationEngine it creates (cf. startProgram) */
+	private static ProgramRegistry programRegistry = new ProgramRegistry();
+	/** is this the program's last file, i.e. is the registry checked for missing declarations after it? */
+	private final boolean isLastFile;
+	/** return type of the currently declared subroutine, i.e. 'void' or a type */
+	private String currentSubroutineReturnType;
 	/** is the current subroutine 'void'? */
-	private static boolean isVoid;
+	private boolean isVoid;
 	/** is the current identifier the name of an array? */
-	private static boolean isArray;
+	private boolean isArray;
 	/** is the current varName being assigned to something right now? i.e. are we in a currently in a let-statement? */
-	private static boolean nonArrayVariableIsBeingAssigned;
+	private boolean nonArrayVariableIsBeingAssigned;
 	/** the amount of arguments that a certain subroutine had listed in its expressionList, used when compiling a subroutineCall */
-	private static Integer nArgs;
+	private Integer nArgs;
 	/** index of a given while-loop within a certain class, within a certain subroutine */
-	private static int whileIndex;
+	private int whileIndex;
 	/** index of a given if-statement within a certain class, within a certain subroutine */
-	private static int ifIndex; 
+	private int ifIndex; 
 	/** the currently processed operator */
-	private static String currentOperator;
-	/** Shows if there has been a syntax error on a certain token. If we detect a syntax error on a certain token, "terminate" the compiler
-	 * (i.e. still processes all the files but doesn't write anything to the outputFile */
-	private static boolean errorOnToken;
+	private Operator currentOperator;
+	/** the operators (as their Operator.ordinal) of every expression that's currently being compiled that are applied once all of
+	 * its terms have been compiled (cf. unloadExpressionsOperatorStack). A nested expression puts its operators on top of the ones of 
+	 * the expression it's nested in and takes them off again before that one continues, so this one array can be reused for all the 
+	 * expressions and compiling an expression doesn't allocate anything (the array only grows when an expression nests deeper than ever before) */
+	private int[] operatorStack;
+	/** the amount of operators on operatorStack */
+	private int operatorStackSize;
+	/** Shows if there has been a syntax error on a certain token. If we detect a syntax error on a certain token, every compile-function
+	 * does nothing until the compiler has recovered from the error (cf. recoverAtStatement, recoverAtClassMember) */
+	private boolean errorOnToken;
+	/** the token the last error has been found on, recovering from the error starts from there */
+	private String errorToken;
+	/** every error found in the current file so far, in the order they were found. A program with errors isn't written at all */
+	private ArrayList<Diagnostic> diagnostics;
+	/** set if recovering from an error skipped to the end of the file, every error after that would just be a consequence of the first one */
+	private boolean recoveredToEndOfFile;
+	/** table of (stringLiteral, poolIndex) of all string literals used within the current class, only used when JackCompiler.poolStringLiterals is set.
+	 * Each pooled literal gets its own static slot (right after the class's own static variables) and its own little
+	 * 'currentFileName.StringLiteral.poolIndex' function that constructs the String-object the first time it is called and returns it from then on */
+	private HashMap<String,Integer> stringPool;
+	/** the pooled string literals in the order of their poolIndex */
+	private ArrayList<String> stringPoolLiterals;
 	
-	static {
+	/** compiles inputFile into outputFile with the tokenizer JackCompiler has opened on inputFile, as part of JackCompiler's program */
+	CompilationEngine(String inputFile, String outputFile) throws IOException {
+		this(inputFile, outputFile, JackCompiler.tokenizer, programRegistry, JackCompiler.directoryIndex == JackCompiler.directoryLength-1);
+	}
+	
+	/** compiles inputFile into outputFile from tokenizer, recording its declarations and uses on registry. If isLastFile is set, the 
+	 * registry is checked for subroutines and classes that have been used but never declared once the class is compiled. All the state 
+	 * of a compilation lives in the instance, so several classes can be compiled on different threads at the same time as long as 
+	 * isLastFile is only set for the one compiled after all the others */
+	CompilationEngine(String inputFile, String outputFile, JackTokenizer tokenizer, ProgramRegistry registry, boolean isLastFile) throws IOException {
+		this.tokenizer = tokenizer;
+		this.registry = registry;
+		this.isLastFile = isLastFile;
 		token = "";
 		currentIdentifierName = "";
 		currentIdentifierType = "";
-		currentIdentifierKind = "";
+		currentIdentifierKind = null;
 		currentVariableIsBeingDeclared = false;
 		currentlyProcessedClassName = "";
-		currentFileName = "";
 		currentlyProcessedSubroutineName = "";
 		currentSubroutineName = "";
-		currentSubroutineKind = "";
-		currentSubroutineCalledOrDeclared = "";
-		classNameTable = new HashMap<String,String>();
-		subroutineTable = new HashMap<String,String[]>();
+		currentSubroutineKind = null;
+		currentSubroutineCalledOrDeclared = null;
+		currentSubroutineReturnType = "";
 		isVoid = false;
 		isArray = false;
 		nonArrayVariableIsBeingAssigned = false;
 		whileIndex = 0;
 		ifIndex = 0;
 		nArgs = 0;
-		currentOperator = "";
+		currentOperator = null;
+		operatorStack = new int[16];
+		operatorStackSize = 0;
 		errorOnToken = false;
-	}
-	
-	CompilationEngine(String inputFile, String outputFile) throws IOException {
-		tokenizer = JackCompiler.tokenizer;
-		vmWriter = new VMWriter(outputFile);
+		errorToken = "";
+		diagnostics = new ArrayList<Diagnostic>();
+		recoveredToEndOfFile = false;
+		stringPool = new HashMap<String,Integer>();
+		stringPoolLiterals = new ArrayList<String>();
+		vmWriter = new VMWriter(outputFile, JackCompiler.checkSyntaxOnly);
 		classLevelSymbolTable = new SymbolTable();
-		subroutineLevelSymbolTable = new SymbolTable();
-		currentFileName = inputFile.substring(inputFile.lastIndexOf("\\")+1).replace(".jack", "");
+		subroutineLevelSymbolTable = new SymbolTable(classLevelSymbolTable);
+		currentFileName = new File(inputFile).getName().replace(".jack", "");
 		advance(); //gets us to 'class' (necessarily btw)
 		if(!errorOnToken) {this.compileClass();}
 	}	
@@ -116,24 +169,33 @@ public class CompilationEngine {
 	/** compiles class className {classVarDec*, subroutineDec*} **/ 
 	public void compileClass() throws IOException {
 	if(!errorOnToken) {
-		currentIdentifierKind = "className";
+		currentIdentifierKind = IdentifierKind.CLASS_NAME;
 			
 		/*class*/			compileKeyword("class"); 
 		/*className*/ 		compileIdentifier(true); 
 		/*{*/				compileSymbol("{");
+							if(errorOnToken) {recoverAtClassMember();}
 		/*classVarDec**/ 	while(token.equals("static") || token.equals("field")) {
 									compileClassVarDec();
+									if(errorOnToken) {recoverAtClassMember();}
 							}
 				
 		/*subroutineDec**/ 	while(token.equals("constructor") || token.equals("function") || token.equals("method")) {
 									compileSubroutineDec();
+									if(errorOnToken) {recoverAtClassMember();}
 								}
 		/*}*/				compileSymbol("}");
 			
+		compileStringPool();
+		registry.declareClassVariables(currentFileName, classLevelSymbolTable);
 		putClassesUsedClassNameTypesOnClassNameTable();
-		if(JackCompiler.directoryIndex == JackCompiler.directoryLength-1) {
+		if(isLastFile) {
+			long start = System.nanoTime();
 			checkClassNameTableForInaccuracies();
 			checkSubroutineTableForInaccuracies();
+			if(JackCompiler.statistics != null) {
+				JackCompiler.statistics.addLinkingNanos(System.nanoTime() - start);
+			}
 		}
 		vmWriter.close();	
 	}
@@ -159,7 +221,7 @@ public class CompilationEngine {
 		/* clear the subroutineSymbolTable upon entering this new subroutine declaration */
 		subroutineLevelSymbolTable.startSubroutine();	
 		currentlyProcessedClassName = currentFileName;
-		currentSubroutineCalledOrDeclared = "DECLARED";
+		currentSubroutineCalledOrDeclared = SubroutineUse.DECLARED;
 		
 							switch(token) {
 		/*'constructor'*/	case("constructor"):
@@ -178,6 +240,7 @@ public class CompilationEngine {
 								}
 							}
 
+							currentSubroutineReturnType = token;
 		/*'void'/type*/		if(tokenIsType()) {compileType();}
 							else if(token.equals("void")) {compileKeyword("void");}
 							else if(!errorOnToken){
@@ -203,8 +266,8 @@ public class CompilationEngine {
 	/** compiles '((type varName)(',' type varName)*)?', furthermore adds the subroutine to the subroutine-table **/
 	public void compileParameterList() throws IOException {
 	if(!errorOnToken) {
-		String currentIdentifierKindSave = currentIdentifierKind;
-		currentIdentifierKind = "ARG";
+		IdentifierKind currentIdentifierKindSave = currentIdentifierKind;
+		currentIdentifierKind = IdentifierKind.ARG;
 		
 		/* need to define 'this' as argument 0 strictly in methods (obviously not in functions and not in 
 		 * constructors either cause we're only creating the object there after already evaluating the constructors arguments). 
@@ -212,8 +275,8 @@ public class CompilationEngine {
 		 * in the method and argument 0 (i.e. the passed objects base address, although it is now stored in pointer 0) 
 		 * doesn't change and everything works as expected (although it would be fine to meddle with argument 0 here, it is best practice to avoid doing so) 
 		*/
-		if(currentSubroutineKind.equals("method")) {
-			subroutineLevelSymbolTable.define("this", currentFileName, "ARG");
+		if(currentSubroutineKind == ProgramRegistry.SubroutineKind.METHOD) {
+			subroutineLevelSymbolTable.define("this", currentFileName, SymbolTable.Kind.ARG);
 		}	
 		
 		/* only if parameterList starts with type will it do something */
@@ -230,9 +293,11 @@ public class CompilationEngine {
 												else if(token.equals(")")) {
 													break;
 												}
-												/* negative break condition of while-loop -> syntax is incorrect, expected ')' */
-												else if(!errorOnToken){
-													System.out.println("Syntax Error: Expected ')' in parameterList");
+												/* negative break condition of while-loop -> syntax is incorrect, expected ')' (or there's been an error already) */
+												else {
+													if(!errorOnToken) {
+														System.out.println("Syntax Error: Expected ')' in parameterList");
+													}
 													break;
 												}
 											}
@@ -249,7 +314,7 @@ public class CompilationEngine {
 			String tokenSave = token;
 			
 			token = currentSubroutineName;
-			currentIdentifierKind = "subroutineName";
+			currentIdentifierKind = IdentifierKind.SUBROUTINE_NAME;
 			nArgs = subroutineLevelSymbolTable.getArgumentIndex() + 1;
 			compileIdentifier(false);
 			
@@ -269,6 +334,7 @@ public class CompilationEngine {
 		/*{*/			compileSymbol("{");
 		/*varDec**/		while(token.equals("var")) {
 							compileVarDec();
+							if(errorOnToken) {recoverAtStatement();}
 						}
 		
 		/* after adding all the local variables (and also argument variables, but those dont matter for this next bit)
@@ -279,16 +345,16 @@ public class CompilationEngine {
 		/* if we're currently compiling a constructor declaration, call the OS-function Memory.alloc to allocate a new memory block
 		 * for the new object. One RAM-Register for each field-variable. Then pop the returned base address of that memory block
 		 * onto pointer 0, i.e. anchor the base address of the THIS-segment in the newly constructed object */
-		if(currentSubroutineKind.equals("constructor")) {
+		if(currentSubroutineKind == ProgramRegistry.SubroutineKind.CONSTRUCTOR) {
 			int nFields = classLevelSymbolTable.getFieldIndex() + 1;
-			vmWriter.writePush("CONST", nFields);
+			vmWriter.writePush(VMWriter.Segment.CONST, nFields);
 			vmWriter.writeCall("Memory.alloc", 1);
-			vmWriter.writePop("POINTER", 0);
+			vmWriter.writePop(VMWriter.Segment.POINTER, 0);
 		}
-		else if(currentSubroutineKind.equals("method")) {
+		else if(currentSubroutineKind == ProgramRegistry.SubroutineKind.METHOD) {
 			/* anchor the THIS-segment onto base-address stored in argument 0 (i.e. the passed object on which the method operates) */
-			vmWriter.writePush("ARG", 0);
-			vmWriter.writePop("POINTER", 0);
+			vmWriter.writePush(VMWriter.Segment.ARG, 0);
+			vmWriter.writePop(VMWriter.Segment.POINTER, 0);
 		}
 		
 		/*statements*/	compileStatements();
@@ -300,7 +366,7 @@ public class CompilationEngine {
 	public void compileVarDec() throws IOException {
 	if(!errorOnToken) {
 		currentVariableIsBeingDeclared = true;
-		currentIdentifierKind = "VAR"; //we're guaranteed that 'var' is the current token on entry of this function (cf. compileSubroutineBody)
+		currentIdentifierKind = IdentifierKind.VAR; //we're guaranteed that 'var' is the current token on entry of this function (cf. compileSubroutineBody)
 		compileKeyword("var");
 		compileTypeVarName();
 		currentVariableIsBeingDeclared = false;
@@ -323,23 +389,28 @@ public class CompilationEngine {
 						throwIllegal("statement(s)");
 					}
 			}
+			if(errorOnToken) {recoverAtStatement();}
 		}
 	}
 	}
 	
-	/** compiles 'let varName ([expression])? = expression;' **/
+	/** compiles 'let varName ([expression])? = expression;'. For 'let varName[expression1] = expression2;' the address varName + expression1
+	 * is computed before expression2, so the value has to go through temp 0 while the address is popped onto pointer 1. If neither of
+	 * the two calls any subroutine (cf. arrayStoreCanBeReordered), the address commands are moved behind the value instead, which then
+	 * gets stored with just 'pop pointer 1, pop that 0' **/
 	public void compileLet() throws IOException {
 	if(!errorOnToken) {	
 		
 		/*let*/								compileKeyword("let");
-											determineKindOfIdentifier();
-											String varName = token;
+											SymbolTable.Entry variable = determineKindOfIdentifier();
 										
 										/* set to true since we dont know whether we're assigning a non-array variable or an array-variable yet.
 										 * distinction will be made in compileIdentifierPolymorphism */
 										nonArrayVariableIsBeingAssigned = true;
 			
-		/*varName([expression])?*/			compileIdentifierPolymorphism();
+		/*varName([expression])?*/			int addressStart = vmWriter.size();
+										compileIdentifierPolymorphism();
+										int addressEnd = vmWriter.size();
 										/* since compileIdentifierPolymorphism is evaluating whether isArray is true or not (i.e. if the current
 										 * identifier represents the varName of an array or not) we want to store thisevaluated value in 
 										 * assignedVarNameIsArray and then set isArray back to false so it works as expected*/
@@ -353,14 +424,19 @@ public class CompilationEngine {
  		/*expression*/						compileExpression();
  		/*;*/								compileSymbol(";");
  		
- 		if(assignedVarNameIsArray) {
- 			vmWriter.writePop("TEMP", 0);
- 			vmWriter.writePop("POINTER", 1);
- 			vmWriter.writePush("TEMP", 0);
- 			vmWriter.writePop("THAT", 0);
+ 		if(assignedVarNameIsArray && arrayStoreCanBeReordered(addressStart, vmWriter.size())) {
+ 			vmWriter.moveToEnd(addressStart, addressEnd);
+ 			vmWriter.writePop(VMWriter.Segment.POINTER, 1);
+ 			vmWriter.writePop(VMWriter.Segment.THAT, 0);
+ 			isArray = false;
+ 		} else if(assignedVarNameIsArray) {
+ 			vmWriter.writePop(VMWriter.Segment.TEMP, 0);
+ 			vmWriter.writePop(VMWriter.Segment.POINTER, 1);
+ 			vmWriter.writePush(VMWriter.Segment.TEMP, 0);
+ 			vmWriter.writePop(VMWriter.Segment.THAT, 0);
  			isArray = false;
  		} else {
- 			lookUpVariableAndWritePopIfItExists(varName);
+ 			writePop(variable);
  		}
  		
 		nonArrayVariableIsBeingAssigned = false;
@@ -372,41 +448,85 @@ public class CompilationEngine {
 	public void compileDo() throws IOException {
 	if(!errorOnToken) {
 		/*do*/				compileKeyword("do");
-							currentSubroutineCalledOrDeclared = "CALLED";
+							currentSubroutineCalledOrDeclared = SubroutineUse.CALLED;
 		/*subroutineCall*/	compileIdentifierPolymorphism();
 		/*;*/				compileSymbol(";");
-		vmWriter.writePop("TEMP", 0);
+		vmWriter.writePop(VMWriter.Segment.TEMP, 0);
 	}
 	}
 	
-	/** compiles 'if (expression) {statements} (else {statements})?'**/
+	/** compiles 'if (expression) {statements} (else {statements})?'. The condition is compiled in a jump context, i.e. the VM-code is laid out
+	 * depending on what the condition looks like:
+	 * - it's a boolean (cf. conditionIsBoolean) and there's an else-branch: 'condition, if-goto THEN, else-statements, goto END_IF, 
+	 *   label THEN, statements, label END_IF', i.e. no 'not' and the else-branch comes first
+	 * - otherwise: 'condition, not, if-goto ELSE, statements, goto END_IF, label ELSE, else-statements, label END_IF', where a condition 
+	 *   that ends in 'not' (i.e. 'if(~x)') just loses its 'not' instead (cf. writeNegatedConditionalJump)
+	 * If there's no else-branch, there's no 'goto END_IF' / 'label ELSE' either, the condition then jumps straight to END_IF **/
 	public void compileIf() throws IOException {
 	if(!errorOnToken) {
-		int ifIndex = CompilationEngine.ifIndex;
-		CompilationEngine.ifIndex++;
+		int ifIndex = this.ifIndex;
+		this.ifIndex++;
+		String THEN = currentFileName + "." + currentSubroutineName + "." + "IfStatementTHEN" + "." + ifIndex;
 		String ELSE = currentFileName + "." + currentSubroutineName + "." + "IfStatementELSE" + "." + ifIndex;
 		String END_IF = currentFileName + "." + currentSubroutineName + "." + "IfStatementEND" + "." + ifIndex;
 		
 		/*if*/						compileKeyword("if");
 		/*(*/						compileSymbol("(");
-		/*expression*/				compileExpression();
+		/*expression*/				int conditionStart = vmWriter.size();
+									compileExpression();
 		/*)*/						compileSymbol(")");
 		
-									/* if expression evaluates to false, go to 'ELSE', if it doesn't, execute the following statements */
-									vmWriter.writeArithmetic("NOT"); //because of how if-goto is implemented in the vm-translator
-									vmWriter.writeIf(ELSE);
+									/* we don't know yet whether there's an else-branch, so if the condition is a boolean we jump to THEN for now 
+									 * and fix that up once we know there isn't one. The statements then go into a block of their own, since
+									 * they're laid out behind the else-branch if there is one (cf. VMWriter.startBlock) */
+									boolean jumpToThen = conditionIsBoolean(conditionStart, vmWriter.size() - 1);
+									int jumpIndex;
+									if(jumpToThen) {
+										jumpIndex = vmWriter.size();
+										vmWriter.writeIf(THEN);
+										vmWriter.startBlock();
+									}
+									else {
+										/* if expression evaluates to false, go to 'ELSE', if it doesn't, execute the following statements */
+										jumpIndex = writeNegatedConditionalJump(conditionStart, ELSE);
+									}
 									
 		/*{*/						compileSymbol("{");
 		/*statements*/				compileStatements();
 		/*}*/						compileSymbol("}");
-									vmWriter.writeGoto(END_IF);
+									ArrayList<VMCommand> thenBranch = jumpToThen ? vmWriter.endBlock() : null;
 		
-		/*(else {statements})?*/	vmWriter.writeLabel(ELSE);
-									if(token.equals("else")) {
+		/*(else {statements})?*/	if(token.equals("else")) {
+										if(!jumpToThen) {
+											vmWriter.writeGoto(END_IF);
+											vmWriter.writeLabel(ELSE);
+										}
 									/*else*/		compileKeyword("else");
 									/*{*/			compileSymbol("{");
 									/*statements*/	compileStatements();
 									/*}*/			compileSymbol("}");
+										if(jumpToThen) {
+											vmWriter.writeGoto(END_IF);
+											vmWriter.writeLabel(THEN);
+											vmWriter.writeBlock(thenBranch);
+										}
+									}
+									else if(jumpToThen && jumpIndex > conditionStart && vmWriter.getCommand(jumpIndex - 1).getOpcode() == VMCommand.Opcode.NOT) {
+										/* no else-branch, so jump to END_IF if the condition is false instead. Since the condition ends in 'not'
+										 * that just means dropping the 'not' (cf. writeNegatedConditionalJump) */
+										vmWriter.setCommand(jumpIndex - 1, new VMCommand(VMCommand.Opcode.IF_GOTO, END_IF, 0));
+										vmWriter.removeLastCommand();
+										vmWriter.writeBlock(thenBranch);
+									}
+									else if(jumpToThen) {
+										/* no else-branch, so jump to END_IF if the condition is false instead */
+										vmWriter.setCommand(jumpIndex, new VMCommand(VMCommand.Opcode.NOT));
+										vmWriter.writeIf(END_IF);
+										vmWriter.writeBlock(thenBranch);
+									}
+									else {
+										/* no else-branch, so jump to END_IF instead of ELSE */
+										vmWriter.setCommand(jumpIndex, new VMCommand(VMCommand.Opcode.IF_GOTO, END_IF, 0));
 									}
 									
 									vmWriter.writeLabel(END_IF);
@@ -415,29 +535,53 @@ public class CompilationEngine {
 	
 	
 	/** compiles 'while (expression) {statements}'. Generates labels like so: 
-	 * currentFileName.currentSubroutineName.WhileLoop.whileIndex, currentFileName.currentSubroutineName.WhileEndLoop.whileIndex **/
+	 * currentFileName.currentSubroutineName.WhileLoop.whileIndex, currentFileName.currentSubroutineName.WhileEndLoop.whileIndex.
+	 * If the condition is a boolean (cf. conditionIsBoolean) it's tested at the bottom of the loop, so every iteration only executes 
+	 * one jump: 'goto TEST, label LOOP, statements, label TEST, condition, if-goto LOOP'.
+	 * Otherwise it's tested at the top: 'label LOOP, condition, not, if-goto END_LOOP, statements, goto LOOP, label END_LOOP'
+	 * (where a condition that ends in 'not' just loses its 'not' instead, cf. writeNegatedConditionalJump) **/
 	public void compileWhile() throws IOException {
 	if(!errorOnToken) {
-		int whileIndex = CompilationEngine.whileIndex;
-		CompilationEngine.whileIndex++;
+		int whileIndex = this.whileIndex;
+		this.whileIndex++;
 		String LOOP = currentFileName + "." + currentSubroutineName + "." + "WhileLOOP" + "." + whileIndex;
+		String TEST = currentFileName + "." + currentSubroutineName + "." + "WhileTEST" + "." + whileIndex;
 		String END_LOOP = currentFileName + "." + currentSubroutineName + "." + "WhileEND_LOOP" + "." + whileIndex;
 		
 		/*while*/					compileKeyword("while");
+									int loopStart = vmWriter.size();
 									vmWriter.writeLabel(LOOP);
 									
 		/*(*/						compileSymbol("(");
-		/*expression*/				compileExpression();
+		/*expression*/				int conditionStart = vmWriter.size();
+									compileExpression();
 		/*)*/						compileSymbol(")");
-									vmWriter.writeArithmetic("NOT"); //because of how if-goto is implemented in the vm-translator
-									vmWriter.writeIf(END_LOOP);
-									
-		/*{*/						compileSymbol("{");
-		/*statements*/				compileStatements();
-		/*}*/						compileSymbol("}");
 		
-									vmWriter.writeGoto(LOOP);
-									vmWriter.writeLabel(END_LOOP);
+									if(conditionIsBoolean(conditionStart, vmWriter.size() - 1)) {
+										/* the condition goes behind the statements. It's the last commands so far, so it's taken out until 
+										 * the statements are compiled, instead of shifting the statements past it */
+										ArrayList<VMCommand> condition = vmWriter.cutCommands(conditionStart);
+										vmWriter.setCommand(loopStart, new VMCommand(VMCommand.Opcode.GOTO, TEST, 0));
+										vmWriter.writeLabel(LOOP);
+										
+		/*{*/								compileSymbol("{");
+		/*statements*/						compileStatements();
+		/*}*/								compileSymbol("}");
+										
+										vmWriter.writeLabel(TEST);
+										vmWriter.writeCommands(condition);
+										vmWriter.writeIf(LOOP);
+									}
+									else {
+										writeNegatedConditionalJump(conditionStart, END_LOOP);
+										
+		/*{*/								compileSymbol("{");
+		/*statements*/						compileStatements();
+		/*}*/								compileSymbol("}");
+		
+										vmWriter.writeGoto(LOOP);
+										vmWriter.writeLabel(END_LOOP);
+									}
 	}
 	}
 
@@ -450,7 +594,7 @@ public class CompilationEngine {
 									}
 		/*;*/						compileSymbol(";");
 		
-		if(isVoid) {vmWriter.writePush("CONST", 0);}
+		if(isVoid) {vmWriter.writePush(VMWriter.Segment.CONST, 0);}
 		vmWriter.writeReturn();
 	}
 	}
@@ -458,60 +602,42 @@ public class CompilationEngine {
 	/** compiles 'term (op term)*' **/
 	public void compileExpression() throws IOException {
 	if(!errorOnToken) {
-		/* the '-' in between two terms in the form of a StringBuilder, need this to make sure things like (a-b) - (c-d) work
-		 * without having to explicitly write (a-b) + -(c-d)*/
-		StringBuilder minusInBetweenTerms = new StringBuilder();
-		/* the operators being used within this expression, placed on a stack (in order to ensure correct operator order) */
-		Stack<String> operatorStack = new Stack<String>();
-		/* stores whether the operator in this expression is '*' or '/' */
-		boolean operatorIsMultiply = false;
-		boolean operatorIsDivide = false;
+		/* this expression's operators go on operatorStack above the ones of the expressions it's nested in (in order to ensure correct operator order) */
+		int operatorStackBase = operatorStackSize;
 		
 		/*term*/		compileTerm();
 		/*(op term)* */	while(tokenIsOperator() && !errorOnToken) {
-							minusInBetweenTerms.setLength(0);
-							
-							compileOperator(operatorStack, minusInBetweenTerms);
-							
-							if(currentOperator.equals("*")) {operatorIsMultiply = true;}
-							else if(currentOperator.equals("/")) {operatorIsDivide = true;}
+							compileOperator();
+							Operator operator = currentOperator;
 							
 							compileTerm();
-							/* check if there was a '-' in between the two terms, if there was, compileOperator already did
-							 * vmWriter.writeArithmetic("ADD") and now we need to negate the next term. This way we can ensure 
-							 * (a-b) - (c-d) works as intended*/
-							if(minusInBetweenTerms.toString().equals("-")) {
-								vmWriter.writeArithmetic("NEG");
+							/* check if there was a '-' in between the two terms, if there was, compileOperator put an ADD onto
+							 * the operatorStack instead and now we need to negate the next term. This way we can ensure 
+							 * (a-b) - (c-d) works as intended without having to explicitly write (a-b) + -(c-d) */
+							if(operator == Operator.SUB) {
+								vmWriter.writeArithmetic(Operator.NEG);
 							}
 							
 							/* multiplication / division priority */
-							if(operatorIsMultiply) {
-								vmWriter.writeArithmetic("MULTIPLY");
-								operatorIsMultiply = false;
-							}
-							else if(operatorIsDivide) {
-								vmWriter.writeArithmetic("DIVIDE");
-								operatorIsDivide = false;
+							else if(operator == Operator.MULTIPLY || operator == Operator.DIVIDE) {
+								vmWriter.writeArithmetic(operator);
 							}
 						}
-		unloadExpressionsOperatorStack(operatorStack);
+		unloadExpressionsOperatorStack(operatorStackBase);
 	}
 	}
 	
 	/** compiles 'integerConstant || stringConstant || keywordConstant || varName || varName[expression] || subroutineCall || (expression) || unaryOp term' **/
 	public void compileTerm() throws IOException {
 	if(!errorOnToken) {
-		StringBuilder unaryOpInTerm = new StringBuilder();
-		unaryOpInTerm.setLength(0);
-		
 		/*constant*/		if(tokenIsConstant()) {
 								compileConstant(); 
 		/*varNamePolym.*/	} else if(tokenizer.tokenType(token) == "IDENTIFIER") {
 								compileIdentifierPolymorphism();
 								/* if an array is being used in an expression, push the value of arr[i] and set isArray back to false so it works as expected */
 								if(isArray && !nonArrayVariableIsBeingAssigned) {
-						 			vmWriter.writePop("POINTER", 1);
-						 			vmWriter.writePush("THAT", 0);
+						 			vmWriter.writePop(VMWriter.Segment.POINTER, 1);
+						 			vmWriter.writePush(VMWriter.Segment.THAT, 0);
 						 			isArray = false;
 								}
 		/*(expression)*/	} else if(token.equals("(")) {
@@ -519,9 +645,9 @@ public class CompilationEngine {
 								compileExpression();
 								compileSymbol(")");
 		/*unaryOp term*/	} else if(tokenIsUnaryOperator()) {
-								compileUnaryOp(unaryOpInTerm);
+								Operator unaryOp = compileUnaryOp();
 								compileTerm();
-								writeUnaryOp(unaryOpInTerm);
+								writeUnaryOp(unaryOp);
 							} else if(!errorOnToken){
 								System.out.println("Illegal Term");
 								throwIllegal("term");
@@ -547,6 +673,21 @@ public class CompilationEngine {
 	public void close() throws IOException {
 		vmWriter.close();
 	}
+	
+	public VMWriter getVMWriter() {
+		return vmWriter;
+	}
+	
+	/** the registry of the whole program JackCompiler has translated so far, cf. registry */
+	public static ProgramRegistry getRegistry() {
+		return programRegistry;
+	}
+	
+	/** forgets the program compiled so far, i.e. starts off with an empty registry. Called at the start of every translation, so one
+	 * JVM can translate several programs (or the same one over and over again, like the benchmarks do) without them mixing */
+	static void startProgram() {
+		programRegistry = new ProgramRegistry();
+	}
 
 	/*** HELPER FUNCTIONS ***/
 	/** advances **/
@@ -561,17 +702,15 @@ public class CompilationEngine {
 	}
 
 	/** iterates through classLevelSymbolTable and checks if there are any variables that aren't of type:
-	 * someOSclass (i.e. Memory, Screen, ...), int, boolean or char and puts them on the classNameTable like so:
-	 * (certainClassName, "classNameAsType")*/
+	 * someOSclass (i.e. Memory, Screen, ...), int, boolean or char and records them as used on the registry */
 	private void putClassesUsedClassNameTypesOnClassNameTable() {
 	if(!errorOnToken) {
 		Set<String> classLevelVarNameTable = classLevelSymbolTable.getKeySet();
 		String tokenSave = token;
 		
 		for(String varName : classLevelVarNameTable) {
-			String typeOfVarName = classLevelSymbolTable.get(varName)[0];
-			boolean classNameDeclared = (classNameTable.containsKey(typeOfVarName)) ? 
-					classNameTable.get(typeOfVarName).equals("CLASSNAME_DECLARED") : false;
+			String typeOfVarName = classLevelSymbolTable.get(varName).getType();
+			boolean classNameDeclared = registry.isClassDeclared(typeOfVarName);
 			token = varName;
 			
 			if(!isOSClassName() && !classNameDeclared)
@@ -583,7 +722,7 @@ public class CompilationEngine {
 				case("char"):
 					break;
 				default:
-					classNameTable.put(typeOfVarName, "CLASSNAME_NOT_DECLARED");
+					registry.useClass(typeOfVarName);
 			}
 		}
 		
@@ -592,8 +731,7 @@ public class CompilationEngine {
 	}
 
 	/** iterates through subroutineLevelSymbolTable and checks if there are any variables that aren't of type:
-	 * someOSclass (i.e. Memory, Screen, ...), int, boolean or char and puts them on the classNameTable like so:
-	 * (certainClassName, "classNameAsType")*/
+	 * someOSclass (i.e. Memory, Screen, ...), int, boolean or char and records them as used on the registry */
 
 	private void putSubroutinesUsedClassNameTypesOnClassNameTable() {
 	if(!errorOnToken) {
@@ -601,9 +739,8 @@ public class CompilationEngine {
 		String tokenSave = token;
 		
 		for(String varName : subroutineLevelVarNameTable) {
-			String typeOfVarName = subroutineLevelSymbolTable.get(varName)[0];
-			boolean classNameDeclared = (classNameTable.containsKey(typeOfVarName)) ? 
-					classNameTable.get(typeOfVarName).equals("CLASSNAME_DECLARED") : false;
+			String typeOfVarName = subroutineLevelSymbolTable.get(varName).getType();
+			boolean classNameDeclared = registry.isClassDeclared(typeOfVarName);
 			token = varName;
 			
 			if(!isOSClassName() && !classNameDeclared)
@@ -615,7 +752,7 @@ public class CompilationEngine {
 				case("char"):
 					break;
 				default:
-					classNameTable.put(typeOfVarName, "CLASSNAME_NOT_DECLARED");
+					registry.useClass(typeOfVarName);
 			}
 		}
 		
@@ -623,59 +760,37 @@ public class CompilationEngine {
 	}
 	}
 
-	private void unloadExpressionsOperatorStack(Stack<String> operatorStack) throws IOException {
+	private void unloadExpressionsOperatorStack(int operatorStackBase) throws IOException {
 	if(!errorOnToken) {
 		/* first we pushed all the terms' evaluated values on the stack, applied multiplication and division right away when needed
 		 * now we need to push the remaining operators in between the rest of the terms that werent multiplied or divided onto the stack
-		 * in the exact order in which they were stored in 'operatorStack' */
-		int operatorStackSize = operatorStack.size();
-		for(int index = 0; index < operatorStackSize; index++) {
-			String operator = operatorStack.pop();
-			switch(operator) {
-			case("+"):
-				vmWriter.writeArithmetic("ADD");
-				break;
-			case("-"):
-				vmWriter.writeArithmetic("SUB");
-				break;
-			case("&"):
-				vmWriter.writeArithmetic("AND");
-				break;
-			case("|"):
-				vmWriter.writeArithmetic("OR");
-				break;
-			case("<"):
-				vmWriter.writeArithmetic("LT");
-				break;
-			case(">"):
-				vmWriter.writeArithmetic("GT");
-				break;
-			case("="):
-				vmWriter.writeArithmetic("EQ");
-			}
+		 * in the reverse order in which they were stored on 'operatorStack' (above operatorStackBase, i.e. just this expression's operators) */
+		while(operatorStackSize > operatorStackBase) {
+			operatorStackSize--;
+			vmWriter.writeArithmetic(Operator.fromOrdinal(operatorStack[operatorStackSize]));
 		}
 	}
 	}
+	
+	/** puts operator on top of operatorStack, the array is only ever replaced by a bigger one if it's full */
+	private void pushOperator(Operator operator) {
+		if(operatorStackSize == operatorStack.length) {
+			operatorStack = Arrays.copyOf(operatorStack, 2 * operatorStack.length);
+		}
+		operatorStack[operatorStackSize] = operator.ordinal();
+		operatorStackSize++;
+	}
 
 
-	/** writes the corresponding VM-command based on the given unary-operator StringBuilder **/
-	private void writeUnaryOp(StringBuilder unaryOp) throws IOException {
+	/** writes the corresponding VM-command of the given unary-operator **/
+	private void writeUnaryOp(Operator unaryOp) throws IOException {
 	if(!errorOnToken) {
-		switch(unaryOp.toString()) {
-		case("-"):
-			vmWriter.writeArithmetic("NEG");
-			unaryOp.setLength(0);
-			break;
-		case("~"):
-			vmWriter.writeArithmetic("NOT");
-			unaryOp.setLength(0);
-			break;
-		default:
-			if(!errorOnToken) {
-				unaryOp.setLength(0);
-				System.out.println("Syntax Error: Invalid unary-operator");
-				throwIllegal("unaryOp");
-			}
+		if(unaryOp == Operator.NEG || unaryOp == Operator.NOT) {
+			vmWriter.writeArithmetic(unaryOp);
+		}
+		else if(!errorOnToken) {
+			System.out.println("Syntax Error: Invalid unary-operator");
+			throwIllegal("unaryOp");
 		}
 	}
 	}
@@ -684,7 +799,6 @@ public class CompilationEngine {
 	 * are to be (maybe?) implemented in another class, or are OS-functions **/
 	private void checkSubroutineTableForInaccuracies() throws IOException {
 		errorOnToken = false; //just set it to false now (so we can do throwIllegal), we're at the end of the file when entering this function
-		Set<String> keyTable = subroutineTable.keySet();
 		boolean error = false;
 		boolean subroutineWasOnlyCalled = false;
 		boolean subroutineIsOfOSClass = false; //i.e. is the subroutine something like Math.muliply()?
@@ -692,10 +806,11 @@ public class CompilationEngine {
 		String tokenSave = token;
 		StringBuilder missingSubroutines = new StringBuilder();
 		
-		for(String key : keyTable) {
-			subroutineWasOnlyCalled = subroutineTable.get(key)[1].equals("CALLED");
+		for(ProgramRegistry.Subroutine subroutine : registry.getSubroutines()) {
+			String key = subroutine.getFunctionName();
+			subroutineWasOnlyCalled = !subroutine.isDeclared();
 			
-			classNameOfSubroutine = key.substring(0, key.indexOf('.'));
+			classNameOfSubroutine = subroutine.getClassName();
 			token = classNameOfSubroutine;
 			subroutineIsOfOSClass = isOSClassName();
 			
@@ -719,16 +834,13 @@ public class CompilationEngine {
 	}
 
 	private void checkClassNameTableForInaccuracies() throws IOException {
-		Set<String> keyTable = classNameTable.keySet();
 		boolean error = false;
-		boolean classNameWasDeclared = false;
 		String tokenSave = token;
 		
-		for(String key : keyTable) {
+		for(String key : registry.getUndeclaredClasses()) {
 			token = key;
-			classNameWasDeclared = classNameTable.get(key).equals("CLASSNAME_DECLARED");
 	
-			if(!classNameWasDeclared && !isOSClassName()) {
+			if(!isOSClassName()) {
 				System.out.println("Missing declaration for class '" + key + "'");
 				error = true;
 			}
@@ -744,7 +856,7 @@ public class CompilationEngine {
 	/** compiles a static variable declaration, i.e. adds static variable(s) to the classSymbolTable **/
 	private void compileStaticVarDec() throws IOException {
 	if(!errorOnToken) {
-		currentIdentifierKind = "STATIC";
+		currentIdentifierKind = IdentifierKind.STATIC;
 		advance();
 		compileTypeVarName();
 	}
@@ -753,7 +865,7 @@ public class CompilationEngine {
 	/** compiles a field variable declaration, i.e. adds field variable(s) to the classSymbolTable **/
 	private void compileFieldVarDec() throws IOException {
 	if(!errorOnToken) {
-		currentIdentifierKind = "FIELD";
+		currentIdentifierKind = IdentifierKind.FIELD;
 		advance();
 		compileTypeVarName();
 	}
@@ -765,16 +877,16 @@ public class CompilationEngine {
 		/*keyword*/		if(tokenIsKeywordConstant()) {
 							switch(token) {
 							case("true"):
-								vmWriter.writePush("CONST", 0);
-								vmWriter.writeArithmetic("NOT");
+								vmWriter.writePush(VMWriter.Segment.CONST, 0);
+								vmWriter.writeArithmetic(Operator.NOT);
 								advance();
 								break;
 							case("false"):
-								vmWriter.writePush("CONST", 0);
+								vmWriter.writePush(VMWriter.Segment.CONST, 0);
 								advance();
 								break;
 							case("null"):
-								vmWriter.writePush("CONST", 0);
+								vmWriter.writePush(VMWriter.Segment.CONST, 0);
 								advance();
 								break;
 							case("this"):
@@ -790,7 +902,7 @@ public class CompilationEngine {
 		
 						switch(tokenizer.tokenType(token)) {
 		/*integer*/			case("INT_CONST"):
-								vmWriter.writePush("CONST", tokenizer.intVal());
+								vmWriter.writePush(VMWriter.Segment.CONST, tokenizer.intVal());
 								advance();
 								break;
 		/*string*/			case("STRING_CONST"):
@@ -820,20 +932,60 @@ public class CompilationEngine {
 	}
 	}
 	
-	/** compiles StringConstants, such that the base address of the newly created string-constant now lies on top of the stack */
+	/** compiles StringConstants, such that the base address of the newly created string-constant now lies on top of the stack.
+	 * If JackCompiler.poolStringLiterals is set, identical literals within a class share one String-object, that is only constructed
+	 * once, so instead of constructing the string right here we just call the literal's pool function (cf. compileStringPool) */
 	private void compileStringConstant() throws IOException {
 	if(!errorOnToken) {
 		token = tokenizer.stringVal();
-		/* first construct a new String-object of length of token (i.e. current STRING_CONST) */
-		vmWriter.writePush("CONST", token.length());
+		if(JackCompiler.poolStringLiterals) {
+			Integer poolIndex = stringPool.get(token);
+			if(poolIndex == null) {
+				poolIndex = stringPoolLiterals.size();
+				stringPool.put(token, poolIndex);
+				stringPoolLiterals.add(token);
+			}
+			vmWriter.writeCall(currentFileName + ".StringLiteral." + poolIndex, 0);
+		}
+		else {
+			writeStringConstruction(token);
+		}
+		advance();
+	}
+	}
+	
+	/** writes the VM-commands that construct a new String-object holding 'string' and leave its base address on top of the stack */
+	private void writeStringConstruction(String string) throws IOException {
+		/* first construct a new String-object of length of string (i.e. current STRING_CONST) */
+		vmWriter.writePush(VMWriter.Segment.CONST, string.length());
 		vmWriter.writeCall("String.new", 1);
 		
-		/* now for each character in token push that character's ascii value onto the stack and call String.appendChar */
-		for(char character : token.toCharArray()) {
-			vmWriter.writePush("CONST", (int)character);
+		/* now for each character in string push that character's ascii value onto the stack and call String.appendChar */
+		for(char character : string.toCharArray()) {
+			vmWriter.writePush(VMWriter.Segment.CONST, (int)character);
 			vmWriter.writeCall("String.appendChar", 2);
 		}
-		advance();
+	}
+	
+	/** writes one 'currentFileName.StringLiteral.poolIndex' function for every pooled string literal of this class. The String-object
+	 * is stored in the static slot 'nStatics + poolIndex', which is 0 until the function is called for the first time, at which point
+	 * the function constructs the String-object and stores it there. Every call returns the stored String-object.
+	 * (the names can't collide with any Jack subroutine since Jack identifiers can't contain '.') */
+	private void compileStringPool() throws IOException {
+	if(!errorOnToken) {
+		int nStatics = classLevelSymbolTable.varCount(SymbolTable.Kind.STATIC) + 1;
+		for(int poolIndex = 0; poolIndex < stringPoolLiterals.size(); poolIndex++) {
+			String functionName = currentFileName + ".StringLiteral." + poolIndex;
+			String READY = functionName + ".READY";
+			vmWriter.writeFunction(functionName, 0);
+			vmWriter.writePush(VMWriter.Segment.STATIC, nStatics + poolIndex);
+			vmWriter.writeIf(READY);
+			writeStringConstruction(stringPoolLiterals.get(poolIndex));
+			vmWriter.writePop(VMWriter.Segment.STATIC, nStatics + poolIndex);
+			vmWriter.writeLabel(READY);
+			vmWriter.writePush(VMWriter.Segment.STATIC, nStatics + poolIndex);
+			vmWriter.writeReturn();
+		}
 	}
 	}
 
@@ -861,16 +1013,16 @@ public class CompilationEngine {
 			case("constructor"):				
 				/* no differenciationg between functions and constructors, except for the fact that constructors must
 				 * call Memory.alloc and return this*/			
-				currentSubroutineKind = "constructor";
+				currentSubroutineKind = ProgramRegistry.SubroutineKind.CONSTRUCTOR;
 				break;
 			case("function"):
-				currentSubroutineKind = "function";
+				currentSubroutineKind = ProgramRegistry.SubroutineKind.FUNCTION;
 				break;
 			case("method"):
-				currentSubroutineKind = "method";
+				currentSubroutineKind = ProgramRegistry.SubroutineKind.METHOD;
 				break;
 			case("this"):
-				vmWriter.writePush("POINTER", 0);
+				vmWriter.writePush(VMWriter.Segment.POINTER, 0);
 				break;
 			default:
 				break;
@@ -901,24 +1053,22 @@ public class CompilationEngine {
 	}
 	}
 	
-	/** compiles operators, pushes the compiled operator onto the passed operator-stack; StringBuilder unaryOp is used in compileExpression
-	 * as a means to handle the '-' operator which acts as both a normal operator and a unary operator for the next term (cf. compileExpression 
-	 * for more on this). This function appends '-' to the unaryOp-StringBuilder. */
-	private void compileOperator(Stack<String> operatorStack, StringBuilder unaryOp) throws IOException {
+	/** compiles operators, sets currentOperator to the compiled operator and pushes it onto operatorStack. The '-' operator acts as both 
+	 * a normal operator and a unary operator for the next term (cf. compileExpression for more on this) */
+	private void compileOperator() throws IOException {
 	if(!errorOnToken) {
 		if(tokenIsOperator()) {
-			currentOperator = token;
-			/* 1) if the current operator is a '-' make sure to update 'unaryOp' accordingly (i.e. append the unaryOp), so
+			currentOperator = Operator.binary(token);
+			/* 1) if the current operator is a '-' push an ADD instead, compileExpression then negates the next term, so
 			 * things like (a+b)-(c+d) work like they do in actual math (i.e. we have to translate the one '-' into add and neg 
-			 * vm-commands (done in compileExpression)
+			 * vm-commands)
 			 * 2) if the current operator is * or / dont add it to the stack, instead apply it to the 2 respective terms
 			 * immediatly after processing them (PEMDAS and all that) */
-			if(currentOperator.equals("-")) {
-				operatorStack.push("+");
-				unaryOp.append("-");
+			if(currentOperator == Operator.SUB) {
+				pushOperator(Operator.ADD);
 			}
-			else if(!currentOperator.equals("*") && !currentOperator.equals("/")) {
-				operatorStack.push(token);
+			else if(currentOperator != Operator.MULTIPLY && currentOperator != Operator.DIVIDE) {
+				pushOperator(currentOperator);
 			}
 			
 			advance();
@@ -928,16 +1078,18 @@ public class CompilationEngine {
 	}
 	}
 	
-	/** compiles 'unaryOp', accepts a unaryOp-StringBuilder as argument and sets it to the currently scanned unary-operator **/
-	private void compileUnaryOp(StringBuilder unaryOp) throws IOException {
+	/** compiles 'unaryOp', returns the currently scanned unary-operator (null if there's been an error) **/
+	private Operator compileUnaryOp() throws IOException {
 	if(!errorOnToken) {
 		if(tokenIsUnaryOperator()) {
-			unaryOp.append(token);
+			Operator unaryOp = Operator.unary(token);
 			advance();
+			return unaryOp;
 		} else if(!errorOnToken) {
 			throwIllegal("unaryOp");
 		}
 	}
+	return null;
 	}
 	
 	/** compiles 'type varName (',' varName)*;' **/
@@ -955,9 +1107,11 @@ public class CompilationEngine {
 		/*;*/							compileSymbol(";");
 										return;
 									}
-									else if(!errorOnToken){
-										System.out.println("Illegal variable declaration");
-										throwIllegal("symbol");
+									else {
+										if(!errorOnToken) {
+											System.out.println("Illegal variable declaration");
+											throwIllegal("symbol");
+										}
 										return;
 									}
 								}
@@ -971,89 +1125,93 @@ public class CompilationEngine {
 		/* first check if identifier adheres to the JACK GRAMMAR SPECIFICATIONS of what an identifier should be */
 		if(tokenizer.tokenType(token).equals("IDENTIFIER")) {
 			currentIdentifierName = token;
-			boolean alreadyOnClassLevelSymbolTable = classLevelSymbolTable.nameExists(currentIdentifierName);	
-			boolean alreadyOnSubroutineLevelSymbolTable = subroutineLevelSymbolTable.nameExists(currentIdentifierName);
 			
 			/* then based on what KIND of identifier we're looking at write different things */
 			switch(currentIdentifierKind) {
 			
 				/* NON-VARIABLES */
 				/* class */
-				case("className"):
+				case CLASS_NAME:
 					currentlyProcessedClassName = token;
-					updateClassNameTable("CLASS_DECLARATION");
+					updateClassNameTable(IdentifierKind.CLASS_NAME);
 					break;
-				case("classNameAsType"):
+				case CLASS_NAME_AS_TYPE:
 					currentlyProcessedClassName = token;
-					updateClassNameTable("OBJECT_DECLARATION");
+					updateClassNameTable(IdentifierKind.CLASS_NAME_AS_TYPE);
 					break;
-				case("classNameInSubroutineCall"):
+				case CLASS_NAME_IN_SUBROUTINE_CALL:
 					currentlyProcessedClassName = token;
-					updateClassNameTable("CLASSNAME_SUBROUTINECALL"); 
+					updateClassNameTable(IdentifierKind.CLASS_NAME_IN_SUBROUTINE_CALL); 
 					break;
 				/* subroutine */
-				case("subroutineName"):
+				case SUBROUTINE_NAME:
 					currentlyProcessedSubroutineName = token;
 					updateSubroutineTable();
 					break;
 					
 				/* CLASS-LEVEL-VARIABLES */
-				case("STATIC"):
+				case STATIC:
 				
-					/* add if variable is not on symbol table yet */
-					if(!alreadyOnClassLevelSymbolTable) {
-						classLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, "STATIC");
-					}
-					/* can't declare the same variable name twice */
-					else if(alreadyOnClassLevelSymbolTable && currentVariableIsBeingDeclared && !errorOnToken) {
-						System.out.println("Compilation Error: Duplicate variable '" + currentIdentifierName + "'");
-						throwIllegal("duplicate variable");
+					/* add if variable is being declared and not on symbol table yet (currentIdentifierKind is still STATIC / FIELD for
+					 * identifiers after the class variable declarations, and those mustn't end up on the table) */
+					if(currentVariableIsBeingDeclared) {
+						if(!classLevelSymbolTable.nameExists(currentIdentifierName)) {
+							classLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, SymbolTable.Kind.STATIC);
+						}
+						/* can't declare the same variable name twice */
+						else if(!errorOnToken) {
+							System.out.println("Compilation Error: Duplicate variable '" + currentIdentifierName + "'");
+							throwIllegal("duplicate variable");
+						}
 					}
 					/* otherwise an already existing variable is just being called, which is perfectly fine, and we don't need to do anything else here */
 	
 					break;
-				case("FIELD"):
+				case FIELD:
 				
-					/* add if variable is not on symbol table yet */
-					if(!alreadyOnClassLevelSymbolTable) {
-						classLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, "FIELD");
-					}
-					/* can't declare the same variable name twice */
-					else if(alreadyOnClassLevelSymbolTable && currentVariableIsBeingDeclared && !errorOnToken) {
-						System.out.println("Compilation Error: Duplicate variable '" + currentIdentifierName + "'");
-						throwIllegal("duplicate variable");
+					/* add if variable is being declared and not on symbol table yet (currentIdentifierKind is still STATIC / FIELD for
+					 * identifiers after the class variable declarations, and those mustn't end up on the table) */
+					if(currentVariableIsBeingDeclared) {
+						if(!classLevelSymbolTable.nameExists(currentIdentifierName)) {
+							classLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, SymbolTable.Kind.FIELD);
+						}
+						/* can't declare the same variable name twice */
+						else if(!errorOnToken) {
+							System.out.println("Compilation Error: Duplicate variable '" + currentIdentifierName + "'");
+							throwIllegal("duplicate variable");
+						}
 					}
 					/* otherwise an already existing variable is just being called, which is perfectly fine, and we don't need to do anything else here */
 	
 					break;
 					
 				/* SUBROUTINE-LEVEL-VARIABLES */				
-				case("VAR"):
+				case VAR:
 				
-					/* add if variable is not on symbol table yet */
-					if(!alreadyOnSubroutineLevelSymbolTable) {
-						subroutineLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, "VAR");
+					/* only reached while declaring (variables that are being used don't go through here, cf. compileSubroutineCallOnObject),
+					 * add if variable is not on symbol table yet */
+					if(!subroutineLevelSymbolTable.nameExists(currentIdentifierName)) {
+						subroutineLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, SymbolTable.Kind.VAR);
 					}
 					/* can't declare the same variable name twice */
-					else if(alreadyOnSubroutineLevelSymbolTable && currentVariableIsBeingDeclared && !errorOnToken) {
+					else if(currentVariableIsBeingDeclared && !errorOnToken) {
 						System.out.println("Compilation Error: Duplicate variable '" + currentIdentifierName + "'");
 						throwIllegal("duplicate variable");
 					}
-					/* otherwise an already existing variable is just being called, which is perfectly fine, and we don't need to do anything else here */
 					
 					break;
-				case("ARG"):
+				case ARG:
 					
-					/* add if variable is not on symbol table yet */
-					if(!alreadyOnSubroutineLevelSymbolTable) {
-						subroutineLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, "ARG");
+					/* only reached while declaring (variables that are being used don't go through here, cf. compileSubroutineCallOnObject),
+					 * add if variable is not on symbol table yet */
+					if(!subroutineLevelSymbolTable.nameExists(currentIdentifierName)) {
+						subroutineLevelSymbolTable.define(currentIdentifierName, currentIdentifierType, SymbolTable.Kind.ARG);
 					}
 					/* can't declare the same variable name twice */
-					else if(alreadyOnSubroutineLevelSymbolTable && currentVariableIsBeingDeclared && !errorOnToken) {
+					else if(currentVariableIsBeingDeclared && !errorOnToken) {
 						System.out.println("Compilation Error: Duplicate variable '" + currentIdentifierName + "'");
 						throwIllegal("duplicate variable");
 					}
-					/* otherwise an already existing variable is just being called, which is perfectly fine, and we don't need to do anything else here */
 					
 					break;
 	
@@ -1078,32 +1236,26 @@ public class CompilationEngine {
 
 	/** updates the class-table based on whether 'className' is used in the context of a class-declaration or
 	 * an object declaration that is an instance of 'className'. Add the current class to the symbol table */
-	private void updateClassNameTable(String typeOfUsage) throws IOException {
+	private void updateClassNameTable(IdentifierKind typeOfUsage) throws IOException {
 	if(!errorOnToken) {
-		boolean classAlreadyOnTable = classNameTable.containsKey(currentlyProcessedClassName);
-		
 		if(!isOSClassName()) {
 			switch(typeOfUsage) {
-			case("CLASS_DECLARATION"):
+			case CLASS_NAME:
 				/* make sure className is the same as the name of the .jack-file it's located in */
 				if(!token.equals(currentFileName) && !errorOnToken) {
 					System.out.println("Class-name must be the same as file-name. Please change the class-name");
 					throwIllegal("className");
 					break;
 				} else {
-					classNameTable.put(currentlyProcessedClassName, "CLASSNAME_DECLARED");
+					registry.declareClass(currentlyProcessedClassName);
 					break;
 				}
 	
-			case("OBJECT_DECLARATION"):
-				if(!classAlreadyOnTable) {
-					classNameTable.put(currentlyProcessedClassName, "CLASSNAME_NOT_DECLARED");
-				}
+			case CLASS_NAME_AS_TYPE:
+				registry.useClass(currentlyProcessedClassName);
 				break;
-			case("CLASSNAME_SUBROUTINECALL"):
-				if(!classAlreadyOnTable) {
-					classNameTable.put(currentlyProcessedClassName, "CLASSNAME_NOT_DECLARED");
-				}
+			case CLASS_NAME_IN_SUBROUTINE_CALL:
+				registry.useClass(currentlyProcessedClassName);
 				break;
 			default:
 				if(!errorOnToken) {
@@ -1115,85 +1267,36 @@ public class CompilationEngine {
 	}
 	}
 
-	/** updates the subroutine-table. Adds the current subroutine if it's not on there yet. Changes the current subroutine to "DECLARED"
-	 * if it's been declared now */
+	/** updates the subroutine-table, i.e. records the current subroutine as called or declared on the registry (a declaration replaces
+	 * previous calls). Then checks that against what's been recorded for the subroutine before: it can't be declared twice and its kind 
+	 * and nArgs can't change (constructors are called as functions though, cf. ProgramRegistry.Subroutine.conflictsWith) */
 	private void updateSubroutineTable() throws IOException {
 	if(!errorOnToken) {
-		String subroutineName = currentlyProcessedClassName + "." + currentlyProcessedSubroutineName;
-		String[] currentSubroutineTableValues = new String[3];
-		boolean subroutineIsBeingCalled = currentSubroutineCalledOrDeclared.equals("CALLED");
-		boolean subroutineIsBeingDeclared = currentSubroutineCalledOrDeclared.equals("DECLARED");
-		boolean subroutineWasAlreadyDeclared = (subroutineTable.containsKey(subroutineName)) ? 
-												subroutineTable.get(subroutineName)[1].equals("DECLARED") : false;
-		boolean onSubroutineTable = subroutineTable.containsKey(subroutineName);
-		boolean subroutinesNArgsHaveChanged = false;
-		String previousSubroutineKind = "NONE";
-		String previousSubroutineCalledOrDeclared = "NONE";
+		boolean subroutineIsBeingDeclared = currentSubroutineCalledOrDeclared == SubroutineUse.DECLARED;
+		ProgramRegistry.Subroutine previous = registry.record(currentlyProcessedClassName, currentlyProcessedSubroutineName, currentSubroutineKind, 
+																nArgs, subroutineIsBeingDeclared, subroutineIsBeingDeclared ? currentSubroutineReturnType : null);
 		
-		if(onSubroutineTable) {
-			subroutinesNArgsHaveChanged = (Integer.parseInt(subroutineTable.get(subroutineName)[2]) == nArgs) ? false : true;
-			previousSubroutineKind = subroutineTable.get(subroutineName)[0];
-			previousSubroutineCalledOrDeclared = subroutineTable.get(subroutineName)[1];
-		}
-		
-		if(subroutineIsBeingCalled && !onSubroutineTable) {
-			currentSubroutineTableValues[0] = currentSubroutineKind;
-			currentSubroutineTableValues[1] = currentSubroutineCalledOrDeclared;
-			currentSubroutineTableValues[2] = nArgs.toString();
-			
-			subroutineTable.put(subroutineName, currentSubroutineTableValues);
-			
-		} else if(subroutineIsBeingDeclared && subroutineWasAlreadyDeclared && !errorOnToken) {
-			System.out.println("Subroutine '" + subroutineName + "' has been declared twice");
-			throwIllegal("subroutine");
+		if(previous != null) {
+			String subroutineName = previous.getFunctionName();
 			
-		} else if(subroutineIsBeingDeclared) {
-			currentSubroutineTableValues[0] = currentSubroutineKind;
-			currentSubroutineTableValues[1] = currentSubroutineCalledOrDeclared;
-			currentSubroutineTableValues[2] = nArgs.toString();
+			if(subroutineIsBeingDeclared && previous.isDeclared() && !errorOnToken) {
+				System.out.println("Subroutine '" + subroutineName + "' has been declared twice");
+				throwIllegal("subroutine");
+			}
 			
-			subroutineTable.put(subroutineName, currentSubroutineTableValues);
-		}
-		
-		/* make sure the subroutine kind hasn't changed over the course of the program. if it has throw a compilition error */
-		boolean subroutineKindChanged = (subroutineTable.containsKey(subroutineName)) ?
-				!subroutineTable.get(subroutineName)[0].equals(previousSubroutineKind) : false;
-		if(previousSubroutineKind.equals("NONE")) {subroutineKindChanged = false;}
-		
-		boolean subroutineWasAlreadyDeclaredAsConstructorPreviously = previousSubroutineKind.equals("constructor");
-		boolean subroutineWasAlreadyCalledAsFunctionPreviously = previousSubroutineKind.equals("function") 
-																&& previousSubroutineCalledOrDeclared.equals("CALLED");
-		boolean currentlyProcessedSubroutineKindIsFunction = currentSubroutineKind.equals("function");
-		boolean currentlyProcessedSubroutineKindIsConstructor = currentSubroutineKind.equals("constructor");
-		
-		/* when you call a constructor, compileSubroutineCallOnClass will set the currentSubroutineKind to "function"
-		 * instead of "constructor", this code handles this exception */
-		
-		/* subroutine was already declared as a constructor but is now being called as a function */
-		if(subroutineIsBeingCalled && subroutineWasAlreadyDeclared) {
-			if(subroutineWasAlreadyDeclaredAsConstructorPreviously && currentlyProcessedSubroutineKindIsFunction) {
-				subroutineKindChanged = false;
+			/* make sure the subroutine kind hasn't changed over the course of the program. if it has throw a compilition error */
+			if(previous.conflictsWith(currentSubroutineKind, previous.getNArgs()) && !errorOnToken) {
+				System.out.println("Compilation Error: Subroutine " + "'" + subroutineName + "' has been used as both a 'function' and a 'method'");
+				throwIllegal("subroutine kind / usage of subroutine");
 			}
-		}
-		
-		/* subroutine was already called as a function but is now being declared as a constructor */
-		if(subroutineIsBeingDeclared && subroutineWasAlreadyCalledAsFunctionPreviously) {
-			if(currentlyProcessedSubroutineKindIsConstructor) {
-				subroutineKindChanged = false;
+			
+			/* make sure the amount of arguments a certain subroutine uses haven't changed over the course of the program */
+			if(previous.getNArgs() != nArgs && !errorOnToken) {
+				System.out.println("Subroutine '" + subroutineName + "' has been used at least twice (either called and/or declared) with different"
+									+ " amounts of parameters");
+				throwIllegal("number of parameters");
 			}
 		}
-				
-		if(subroutineKindChanged && !errorOnToken) {
-			System.out.println("Compilation Error: Subroutine " + "'" + subroutineName + "' has been used as both a 'function' and a 'method'");
-			throwIllegal("subroutine kind / usage of subroutine");
-		}
-		
-		/* make sure the amount of arguments a certain subroutine uses haven't changed over the course of the program */
-		if(subroutinesNArgsHaveChanged && !errorOnToken) {
-			System.out.println("Subroutine '" + subroutineName + "' has been used at least twice (either called and/or declared) with different"
-								+ " amounts of parameters");
-			throwIllegal("number of parameters");
-		}
 	}
 	}
 
@@ -1215,9 +1318,10 @@ public class CompilationEngine {
 				break;
 			case("."):
 				/* could be either object.subroutineCall() or className.subroutineCall() */
-				if(subroutineLevelSymbolTable.get(previousToken) != null || classLevelSymbolTable.get(previousToken) != null) {
+				SymbolTable.Entry object = subroutineLevelSymbolTable.resolve(previousToken);
+				if(object != null) {
 					//method
-					compileSubroutineCallOnObject(previousToken);
+					compileSubroutineCallOnObject(object);
 					break;
 				} else {
 					//function or constructor
@@ -1242,16 +1346,16 @@ public class CompilationEngine {
 	/** compiles 'subroutineName(expressionList)', this acts as a method. Then goes on to write a vm-Call command to the output-file. **/
 	private void compileSimpleSubroutineCall(String subroutineName) throws IOException {
 	if(!errorOnToken) {
-		String currentOuterSubroutineKind = currentSubroutineKind;
-		currentSubroutineKind = "method";
-		currentSubroutineCalledOrDeclared = "CALLED";
+		ProgramRegistry.SubroutineKind currentOuterSubroutineKind = currentSubroutineKind;
+		currentSubroutineKind = ProgramRegistry.SubroutineKind.METHOD;
+		currentSubroutineCalledOrDeclared = SubroutineUse.CALLED;
 		nArgs = 0;
 		
 							/* since we impose simpleSubroutineCall to be a method and we furthermore impose that simpleSubroutineCall
 							 * can only be called within a method (that obviously already operates on a method) we now push the currently
 							 * operated-upon object onto the stack as argument 0 for this here subroutineCall */
-							if(currentOuterSubroutineKind.equals("constructor") || currentOuterSubroutineKind.equals("method")) {
-								vmWriter.writePush("POINTER", 0);
+							if(currentOuterSubroutineKind == ProgramRegistry.SubroutineKind.CONSTRUCTOR || currentOuterSubroutineKind == ProgramRegistry.SubroutineKind.METHOD) {
+								vmWriter.writePush(VMWriter.Segment.POINTER, 0);
 								nArgs++;
 							} else if(!errorOnToken){
 								System.out.println("Cannot perform a simpleSubroutineCall (i.e. a function-call without a specified"
@@ -1259,7 +1363,7 @@ public class CompilationEngine {
 								throwIllegal("simpleSubroutineCall");
 							}
 
-							currentIdentifierKind = "subroutineName";
+							currentIdentifierKind = IdentifierKind.SUBROUTINE_NAME;
 							currentlyProcessedClassName = currentFileName;
 								
 								
@@ -1281,40 +1385,26 @@ public class CompilationEngine {
 	}
 	}
 
-	/** compiles 'objectName.subroutineName(expressionList)', this acts as a method. Then goes on to write a vm-Call command to the output-file. **/
-	private void compileSubroutineCallOnObject(String objectName) throws IOException {
+	/** compiles 'objectName.subroutineName(expressionList)', this acts as a method. Then goes on to write a vm-Call command to the output-file.
+	 * object is what objectName resolved to (cf. compileIdentifierPolymorphism) **/
+	private void compileSubroutineCallOnObject(SymbolTable.Entry object) throws IOException {
 	if(!errorOnToken) {
-		String currentOuterSubroutineKind = currentSubroutineKind;
+		ProgramRegistry.SubroutineKind currentOuterSubroutineKind = currentSubroutineKind;
 		
-		currentSubroutineKind = "method";
-		currentSubroutineCalledOrDeclared = "CALLED";
+		currentSubroutineKind = ProgramRegistry.SubroutineKind.METHOD;
+		currentSubroutineCalledOrDeclared = SubroutineUse.CALLED;
 		nArgs = 0;
 		
-							String advancedToken = token;
-							token = objectName;
-		/*objectName*/			determineKindOfIdentifier();
-								compileIdentifier(false);
-								
-							/* set currentlyProcessedClassName to objectName's type */
-							if(subroutineLevelSymbolTable.nameExists(objectName)) {
-								currentlyProcessedClassName = subroutineLevelSymbolTable.typeOf(objectName);
-							}
-							else if(classLevelSymbolTable.nameExists(objectName)) {
-								currentlyProcessedClassName = classLevelSymbolTable.typeOf(objectName);
-							}
-							else if(!errorOnToken) {
-								System.out.println("Compilation Error: Variable '" + objectName + "' has not been declared.");
-								throwIllegal("variable");
-							}
+		/*objectName*/		/* set currentlyProcessedClassName to objectName's type */
+							currentlyProcessedClassName = object.getType();
 							 
 							/* push the to-be-operated-upon object onto the stack as argument 0 */
-							lookUpVariableAndWritePushIfItExists(objectName);
+							writePush(object);
 							nArgs++;
 							
-							token = advancedToken;
 		/*.*/					compileSymbol(".");
 		
-		/*subroutineName*/		currentIdentifierKind = "subroutineName";
+		/*subroutineName*/		currentIdentifierKind = IdentifierKind.SUBROUTINE_NAME;
 								currentlyProcessedSubroutineName = token;
 								String currentSubroutineNameSave = currentlyProcessedSubroutineName;
 								/* advance for now we first need to determine nArgs before we can do compileIdentifier,
@@ -1342,10 +1432,10 @@ public class CompilationEngine {
 	 * Then goes on to write a vm-Call command to the output-file. **/
 	private void compileSubroutineCallOnClass(String className) throws IOException {
 	if(!errorOnToken) {
-		String currentOuterSubroutineKind = currentSubroutineKind;
+		ProgramRegistry.SubroutineKind currentOuterSubroutineKind = currentSubroutineKind;
 		
-		currentSubroutineKind = "function";
-		currentSubroutineCalledOrDeclared = "CALLED";
+		currentSubroutineKind = ProgramRegistry.SubroutineKind.FUNCTION;
+		currentSubroutineCalledOrDeclared = SubroutineUse.CALLED;
 		nArgs = 0;
 		
 		/* need these two lines so inside compileIdentifier, where currentIdentifierKind is 'subroutineName', we dont 
@@ -1356,11 +1446,11 @@ public class CompilationEngine {
 		
 								String advancedToken = token;
 								token = className;
-		/*className*/			currentIdentifierKind = "classNameInSubroutineCall";	
+		/*className*/			currentIdentifierKind = IdentifierKind.CLASS_NAME_IN_SUBROUTINE_CALL;	
 									compileIdentifier(false);
 								token = advancedToken;
 		/*.*/						compileSymbol(".");
-		/*subroutineName*/		currentIdentifierKind = "subroutineName";
+		/*subroutineName*/		currentIdentifierKind = IdentifierKind.SUBROUTINE_NAME;
 								currentlyProcessedSubroutineName = token;
 								String currentSubroutineNameSave = currentlyProcessedSubroutineName;
 								/* advance for now we first need to determine nArgs before we can do compileIdentifier,
@@ -1395,9 +1485,9 @@ public class CompilationEngine {
 
 						String advancedToken = token;
 						token = arrayName;
-		/*varName*/			determineKindOfIdentifier();
+		/*varName*/			SymbolTable.Entry array = determineKindOfIdentifier();
 							/* push base-address of array on the stack (if it exists) */
-							lookUpVariableAndWritePushIfItExists(arrayName);
+							writePush(array);
 						token = advancedToken;
 		/*[*/				compileSymbol("[");
 							/* don't know if next expression is array, also need to set it to false so it works as expected in compileTerm*/
@@ -1407,7 +1497,7 @@ public class CompilationEngine {
 		/*]*/				compileSymbol("]");
 		
 		/* pop baseAdd + offset onto pointer 1 */
-		vmWriter.writeArithmetic("ADD");
+		vmWriter.writeArithmetic(Operator.ADD);
 		/* compileTerm might set this to false, so, so we can use isArray as expected, do this */
 		isArray = true;
 	}
@@ -1419,66 +1509,100 @@ public class CompilationEngine {
 		if(!nonArrayVariableIsBeingAssigned) {
 			String advancedToken = token;
 					token = varName;
-		/*varName*/		determineKindOfIdentifier();
-						lookUpVariableAndWritePushIfItExists(varName);
+		/*varName*/		SymbolTable.Entry variable = determineKindOfIdentifier();
+						writePush(variable);
 					token = advancedToken;
 		}	
 		nonArrayVariableIsBeingAssigned = false;
 	}
 	}
 	
-	/** looks through both symbol-tables for corresponding VM-name of variable (i.e. local 0, argument 1, etc.) and writes the corresponding
-	 * VM-push command to the output-file to push the passed variable, throws error if not found */
-	private void lookUpVariableAndWritePushIfItExists(String varName) throws IOException {
+	/** writes the VM-push command of the variable's VM-name (i.e. local 0, argument 1, etc.) to the output-file. variable is what 
+	 * determineKindOfIdentifier resolved the variable to, which has already reported the error if it's null */
+	private void writePush(SymbolTable.Entry variable) throws IOException {
 	if(!errorOnToken) {
-	 	if(subroutineLevelSymbolTable.nameExists(varName)) {
-	 		vmWriter.writePush(subroutineLevelSymbolTable.kindOf(varName), subroutineLevelSymbolTable.indexOf(varName));
-	 	}
-	 	else if(classLevelSymbolTable.nameExists(varName)) {
-	 		vmWriter.writePush(classLevelSymbolTable.kindOf(varName), classLevelSymbolTable.indexOf(varName));
-	 	}
-	 	else if(!errorOnToken) {
-	 		System.out.println("Compilation Error: Variable '" + varName + "' has not been declared.");
-	 		throwIllegal("variable");
-	 	}
+	 	vmWriter.writePush(variable.getKind().getSegment(), variable.getIndex());
 	}
 	}
 	
-	/** looks through both symbol-tables for corresponding VM-name of variable (i.e. local 0, argument 1, etc.) and writes the corresponding
-	 * VM-pop command to the output-file to pop the passed variable, throws error if not found */
-	private void lookUpVariableAndWritePopIfItExists(String varName) throws IOException {
+	/** writes the VM-pop command of the variable's VM-name (i.e. local 0, argument 1, etc.) to the output-file. variable is what 
+	 * determineKindOfIdentifier resolved the variable to, which has already reported the error if it's null */
+	private void writePop(SymbolTable.Entry variable) throws IOException {
 	if(!errorOnToken) {
-	 	if(subroutineLevelSymbolTable.nameExists(varName)) {
-	 		vmWriter.writePop(subroutineLevelSymbolTable.kindOf(varName), subroutineLevelSymbolTable.indexOf(varName));
-	 	}
-	 	else if(classLevelSymbolTable.nameExists(varName)) {
-	 		vmWriter.writePop(classLevelSymbolTable.kindOf(varName), classLevelSymbolTable.indexOf(varName));
-	 	}
-	 	else if(!errorOnToken) {
-	 		System.out.println("Compilation Error: Variable '" + varName + "' has not been declared.");
-	 		throwIllegal("variable");
-	 	}
+	 	vmWriter.writePop(variable.getKind().getSegment(), variable.getIndex());
 	}
 	}
 	
 	/** given a certain grammatically valid identifier, determines its kind and sets 'currentIdentifierKind' to
 	 * the determined kind, writes an error if its an illegal kind. Also implicitly checks if the identifier exisits
-	 * on either the 'subroutineLevelSymbolTable' or the 'classLevelSymbolTable' **/
-	private void determineKindOfIdentifier() throws IOException {
+	 * on either the 'subroutineLevelSymbolTable' or the 'classLevelSymbolTable'. Returns the identifier's entry (null after an error),
+	 * so it doesn't have to be resolved again to push / pop it **/
+	private SymbolTable.Entry determineKindOfIdentifier() throws IOException {
 	if(!errorOnToken) {
-		if(subroutineLevelSymbolTable.get(token) != null) {
-			currentIdentifierKind = subroutineLevelSymbolTable.kindOf(token);
-		}
-		else if(classLevelSymbolTable.get(token) != null) {
-			currentIdentifierKind = classLevelSymbolTable.kindOf(token);
+		SymbolTable.Entry variable = subroutineLevelSymbolTable.resolve(token);
+		if(variable != null) {
+			currentIdentifierKind = IdentifierKind.of(variable.getKind());
 		}
 		else if(!errorOnToken) {
 			System.out.println("Syntax Error: Undeclared variable in expression(/term)");
 			throwIllegal("identifier");
 		}
+		return variable;
 	}
+	return null;
  	}
 	
+	/** can the commands from 'from' up to (excluding) 'to' of an array store, i.e. the address and the value, be evaluated value first?
+	 * Jack expressions can only have side effects through calls, so that's the case as long as there are none, except for Math.multiply
+	 * and Math.divide, which are just how '*' and '/' are compiled. Array reads within them don't matter, since the 'pop pointer 1' of the 
+	 * store itself comes after all of them either way */
+	private boolean arrayStoreCanBeReordered(int from, int to) {
+		for(int index = from; index < to; index++) {
+			VMCommand command = vmWriter.getCommand(index);
+			if(command.getOpcode() == VMCommand.Opcode.CALL && !command.getArgument().equals("Math.multiply") && !command.getArgument().equals("Math.divide")) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** is the value computed by the condition-command at 'index' (and the commands before it, down to conditionStart) guaranteed to be
+	 * a boolean, i.e. either 0 (false) or -1 (true)? That's the case for comparisons, 'false'/'null'/'0', and 'not' of any of these.
+	 * Only then can 'if-goto' (which jumps on anything but 0) be used on the condition directly instead of on its negation 
+	 * (which only jumps on exactly -1, cf. writeNegatedConditionalJump) without changing what the program does */
+	private boolean conditionIsBoolean(int conditionStart, int index) {
+		VMCommand command = vmWriter.getCommand(index);
+		if(index < conditionStart || command == null || command.getOpcode() == null) {
+			return false;
+		}
+		switch(command.getOpcode()) {
+		case LT:
+		case GT:
+		case EQ:
+			return true;
+		case PUSH:
+			return command.getSegment() == VMWriter.Segment.CONST && command.getIndex() == 0;
+		case NOT:
+			return conditionIsBoolean(conditionStart, index - 1);
+		default:
+			return false;
+		}
+	}
+	
+	/** writes a jump to label that's taken if the condition (whose commands start at conditionStart) is false. Usually that's 'not, if-goto label',
+	 * but if the condition ends in 'not' itself the two 'not's cancel out, so we just remove the condition's 'not' instead.
+	 * Returns the index of the written 'if-goto' */
+	private int writeNegatedConditionalJump(int conditionStart, String label) throws IOException {
+		VMCommand lastCommand = vmWriter.getCommand(vmWriter.size() - 1);
+		if(vmWriter.size() > conditionStart && lastCommand.getOpcode() == VMCommand.Opcode.NOT) {
+			vmWriter.removeLastCommand();
+		} else {
+			vmWriter.writeArithmetic(Operator.NOT); //because of how if-goto is implemented in the vm-translator
+		}
+		vmWriter.writeIf(label);
+		return vmWriter.size() - 1;
+	}
+	
 	/** is currentToken a type? **/
 	private boolean tokenIsType() {
 		if(token.equals("int") || token.equals("char") || token.equals("boolean") || (tokenizer.tokenType(token)).equals("IDENTIFIER") 
@@ -1502,23 +1626,12 @@ public class CompilationEngine {
 	
 	/** is currentToken an operator? **/
 	private boolean tokenIsOperator() {
-		if(token.equals("+") || token.equals("-") || token.equals("*") || token.equals("/") || token.equals("&")
-		|| token.equals("|") || token.equals("<") || token.equals(">") || token.equals("=")) {
-			return true;
-		}
-		else {
-			return false;
-		}
+		return Operator.binary(token) != null;
 	}
 	
 	/** is currentToken a unaryOp? **/
 	private boolean tokenIsUnaryOperator() {
-		if(token.equals("~") || token.equals("-")) {
-			return true;
-		}
-		else {
-			return false;
-		}
+		return Operator.unary(token) != null;
 	}
 	
 	/** is currentToken a constant? **/
@@ -1544,27 +1657,96 @@ public class CompilationEngine {
 	
 	/** is the current className a className that's already being used in the Jack OS? **/
 	private boolean isOSClassName() {
-		switch(token) {
-		case("Math"): return true;
-		case("String"): return true;
-		case("Array"): return true;
-		case("Output"): return true;
-		case("Screen"): return true;
-		case("Keyboard"): return true;
-		case("Memory"): return true;
-		case("Sys"): return true;
-		default: return false;
-		}
+		return ProgramRegistry.isOSClass(token);
 	}
 
-	/** writes <token> INVALID TOKEN </token> **/
+	/** reports the error on the current token and records it on diagnostics **/
 	private void throwIllegal(String exception) throws IOException {
 		if(!errorOnToken) {
 			errorOnToken = true;
+			errorToken = token;
+			if(recoveredToEndOfFile) {
+				return;
+			}
+			diagnostics.add(new Diagnostic(currentFileName, tokenizer.getLineNumber(), token, "Illegal " + exception));
 			System.out.println("In '" + currentFileName + "' at line: " + tokenizer.getLineNumber() 
-								+ ": Error on this token: '" + CompilationEngine.token + "'. Delete this token.");
+								+ ": Error on this token: '" + token + "'. Delete this token.");
 			System.out.println("Exception: Illegal " + exception);
 			advance();
 		}
 	}
+	
+	/** panic-mode recovery from an error within a subroutine body: skips tokens, starting at the one the error was found on, until
+	 * the next ';' (which is skipped as well), '}' or statement keyword. Whole '{...}' blocks are skipped along the way, so a broken 
+	 * if- or while-statement is skipped including its body. Every token is only ever skipped once, so compiling a file with errors 
+	 * stays linear in its amount of tokens */
+	private void recoverAtStatement() throws IOException {
+		startRecovery();
+		int depth = 0;
+		while(!isEndOfFile()) {
+			if(token.equals("{")) {
+				depth++;
+			}
+			else if(token.equals("}")) {
+				if(depth == 0) {
+					return;
+				}
+				depth--;
+			}
+			else if(depth == 0 && token.equals(";")) {
+				advance();
+				return;
+			}
+			else if(depth == 0 && tokenIsStatement()) {
+				return;
+			}
+			advance();
+		}
+		recoveredToEndOfFile = true;
+	}
+	
+	/** panic-mode recovery from an error in a class variable or subroutine declaration: skips tokens until the next 'static', 'field',
+	 * 'constructor', 'function' or 'method', none of those can appear within a subroutine. If that skips to the end of the file, the
+	 * class's closing '}' has been skipped as well, so it's put back to be compiled as usual */
+	private void recoverAtClassMember() throws IOException {
+		startRecovery();
+		String lastSkippedToken = "";
+		while(!isEndOfFile()) {
+			switch(token) {
+			case("static"): case("field"): case("constructor"): case("function"): case("method"):
+				return;
+			}
+			lastSkippedToken = token;
+			advance();
+		}
+		if(lastSkippedToken.equals("}")) {
+			token = "}";
+		}
+		else {
+			recoveredToEndOfFile = true;
+		}
+	}
+	
+	/** continues compiling at the token the error has been found on, with the state of whatever has been compiled when the error
+	 * was found reset */
+	private void startRecovery() {
+		errorOnToken = false;
+		token = errorToken;
+		isArray = false;
+		nonArrayVariableIsBeingAssigned = false;
+		currentVariableIsBeingDeclared = false;
+		nArgs = 0;
+		currentOperator = null;
+		operatorStackSize = 0;
+	}
+	
+	/** advance() sets the token to " " once there are no more tokens left */
+	private boolean isEndOfFile() {
+		return token.equals(" ");
+	}
+	
+	/** every error found in the current file, empty if it compiled without any */
+	public ArrayList<Diagnostic> getDiagnostics() {
+		return diagnostics;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,221 @@
+package compiler;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** what one run of JackCompiler.translate did and where the time went, collected when JackCompiler.collectStatistics is set:
+ *
+ * - per file: its size, its amount of tokens and the nanoseconds spent lexing it (inside JackTokenizer), parsing and generating its
+ *   VM-code (everything else CompilationEngine / AstCompiler did for it) and writing its output-file
+ * - per program: the nanoseconds spent on the checks across files (missing declarations, conflicting uses of subroutines), the
+ *   whole-program optimizations and writing the files that cover the whole program (.asm, .jsym), plus the total
+ * - counters: symbol-table lookups and the labels / VM-commands of the output by opcode
+ *
+ * toJson turns all of it into one JSON-object, which JackCompiler writes next to the output (cf. FILE_EXTENSION). The counters that are
+ * updated while compiling are LongAdders, since AstCompiler may compile on several threads at once */
+public class CompilerStatistics {
+	public static final String FILE_EXTENSION = ".stats.json";
+
+	/** the statistics of one .jack-file */
+	public static class FileStatistics {
+		private final String fileName;
+		private final long bytes;
+		private long tokens;
+		private long lexingNanos;
+		private long compilingNanos;
+		private long writingNanos;
+
+		FileStatistics(String fileName, long bytes) {
+			this.fileName = fileName;
+			this.bytes = bytes;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getTokens() {
+			return tokens;
+		}
+
+		public long getLexingNanos() {
+			return lexingNanos;
+		}
+
+		public long getCompilingNanos() {
+			return compilingNanos;
+		}
+
+		public long getWritingNanos() {
+			return writingNanos;
+		}
+	}
+
+	private final String input;
+	/** the compiled files, in the order they were compiled in */
+	private final ArrayList<FileStatistics> files;
+	private long linkingNanos;
+	private long optimizingNanos;
+	/** writing the files that cover the whole program, the .vm-files are counted per file */
+	private long programWritingNanos;
+	private long totalNanos;
+	private final LongAdder symbolLookups;
+	/** (opcode, amount) of the program's VM-commands, sorted by opcode. Counted once the program is done (cf. finish) */
+	private final TreeMap<String,Long> vmCommands;
+
+	CompilerStatistics(String input) {
+		this.input = input;
+		files = new ArrayList<FileStatistics>();
+		symbolLookups = new LongAdder();
+		vmCommands = new TreeMap<String,Long>();
+	}
+
+	/** records that a file has been compiled: it took nanos in total, of which its tokenizer spent lexingNanos reading its tokens and
+	 * linkingNanos were spent on the checks across files (which the last file of a program does) */
+	void addFile(String fileName, long bytes, JackTokenizer tokenizer, long nanos, long linkingNanos) {
+		FileStatistics file = new FileStatistics(fileName, bytes);
+		file.tokens = tokenizer.getTokenCount();
+		file.lexingNanos = tokenizer.getLexingNanos();
+		file.compilingNanos = nanos - file.lexingNanos - linkingNanos;
+		files.add(file);
+	}
+
+	/** records that writing the output-file of the given class took nanos */
+	void addWritingNanos(String className, long nanos) {
+		for(FileStatistics file : files) {
+			if(file.fileName.equals(className + ".jack")) {
+				file.writingNanos += nanos;
+				return;
+			}
+		}
+		programWritingNanos += nanos;
+	}
+
+	void addLinkingNanos(long nanos) {
+		linkingNanos += nanos;
+	}
+
+	void addOptimizingNanos(long nanos) {
+		optimizingNanos += nanos;
+	}
+
+	void addProgramWritingNanos(long nanos) {
+		programWritingNanos += nanos;
+	}
+
+	void countSymbolLookup() {
+		symbolLookups.increment();
+	}
+
+	/** the program is done, i.e. translate took totalNanos and program holds all of its VM-code */
+	void finish(long totalNanos, VMProgram program) {
+		this.totalNanos = totalNanos;
+		for(VMWriter vmWriter : program.getVMWriters()) {
+			for(VMCommand command : vmWriter.getCommands()) {
+				vmCommands.merge(command.getOpcode().getName(), 1L, Long::sum);
+			}
+		}
+	}
+
+	public ArrayList<FileStatistics> getFiles() {
+		return files;
+	}
+
+	public long getLinkingNanos() {
+		return linkingNanos;
+	}
+
+	public long getOptimizingNanos() {
+		return optimizingNanos;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getSymbolLookups() {
+		return symbolLookups.sum();
+	}
+
+	/** the labels of the program's output, i.e. without the ones the compiler wrote and then dropped again (e.g. when laying out an if) */
+	public long getLabels() {
+		return vmCommands.getOrDefault("label", 0L);
+	}
+
+	public Map<String,Long> getVMCommands() {
+		return vmCommands;
+	}
+
+	/** all the statistics as one JSON-object:
+	 * {"input", "files": [{"file", "bytes", "tokens", "lexingNanos", "compilingNanos", "writingNanos"}, ...],
+	 *  "phases": {"lexingNanos", "compilingNanos", "linkingNanos", "optimizingNanos", "writingNanos", "totalNanos"},
+	 *  "counters": {"files", "bytes", "tokens", "symbolLookups", "labels", "vmCommands", "vmCommandsByOpcode": {opcode: amount, ...}}}
+	 * The phases add up the files' times, writingNanos includes the files covering the whole program */
+	public String toJson() {
+		long bytes = 0;
+		long tokens = 0;
+		long lexingNanos = 0;
+		long compilingNanos = 0;
+		long writingNanos = programWritingNanos;
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n  \"input\": ").append(quote(input)).append(",\n  \"files\": [");
+		for(int i = 0; i < files.size(); i++) {
+			FileStatistics file = files.get(i);
+			bytes += file.bytes;
+			tokens += file.tokens;
+			lexingNanos += file.lexingNanos;
+			compilingNanos += file.compilingNanos;
+			writingNanos += file.writingNanos;
+			sb.append(i > 0 ? ",\n" : "\n");
+			sb.append("    {\"file\": ").append(quote(file.fileName)).append(", \"bytes\": ").append(file.bytes).append(", \"tokens\": ").append(file.tokens)
+				.append(", \"lexingNanos\": ").append(file.lexingNanos).append(", \"compilingNanos\": ").append(file.compilingNanos)
+				.append(", \"writingNanos\": ").append(file.writingNanos).append("}");
+		}
+		sb.append("\n  ],\n");
+		sb.append("  \"phases\": {\"lexingNanos\": ").append(lexingNanos).append(", \"compilingNanos\": ").append(compilingNanos)
+			.append(", \"linkingNanos\": ").append(linkingNanos).append(", \"optimizingNanos\": ").append(optimizingNanos)
+			.append(", \"writingNanos\": ").append(writingNanos).append(", \"totalNanos\": ").append(totalNanos).append("},\n");
+		long nVMCommands = 0;
+		StringBuilder byOpcode = new StringBuilder();
+		for(Map.Entry<String,Long> entry : vmCommands.entrySet()) {
+			nVMCommands += entry.getValue();
+			byOpcode.append(byOpcode.length() > 0 ? ", " : "").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+		}
+		sb.append("  \"counters\": {\"files\": ").append(files.size()).append(", \"bytes\": ").append(bytes).append(", \"tokens\": ").append(tokens)
+			.append(", \"symbolLookups\": ").append(getSymbolLookups()).append(", \"labels\": ").append(getLabels())
+			.append(", \"vmCommands\": ").append(nVMCommands).append(", \"vmCommandsByOpcode\": {").append(byOpcode).append("}}\n}\n");
+		return sb.toString();
+	}
+
+	public void write(String outputFile) throws IOException {
+		FileWriter writer = new FileWriter(outputFile);
+		writer.write(toJson());
+		writer.close();
+	}
+
+	/** s as a JSON-string, i.e. in quotes and with quotes, backslashes and control characters escaped */
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			}
+			else if(c < 0x20) {
+				sb.append(String.format("\\u%04x", (int)c));
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
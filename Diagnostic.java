@@ -0,0 +1,38 @@
+package compiler;
+
+/** one error the compiler has found in a .jack-file: the file, the line, the token it found the error on and what was illegal about it.
+ * CompilationEngine collects them per file (cf. CompilationEngine.getDiagnostics) instead of stopping at the first one */
+public class Diagnostic {
+	private final String fileName;
+	private final int lineNumber;
+	private final String token;
+	private final String message;
+
+	Diagnostic(String fileName, int lineNumber, String token, String message) {
+		this.fileName = fileName;
+		this.lineNumber = lineNumber;
+		this.token = token;
+		this.message = message;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	public String getToken() {
+		return token;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return fileName + ":" + lineNumber + ": " + message + " ('" + token + "')";
+	}
+}
@@ -0,0 +1,564 @@
+package compiler;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/** translates VM-commands straight to Hack assembly, so a whole program can be compiled into one .asm-file without writing
+ * (and re-reading) any .vm-files in between. Uses the standard VM mapping on the Hack platform: SP, LCL, ARG, THIS, THAT in RAM[0-4], 
+ * temp in RAM[5-12], R13-R15 as scratch registers, statics as 'className.index' symbols and labels as 'functionName$label'.
+ * 
+ * The top of the VM-stack is cached in the D-register whenever possible (cf. topOfStackInD), i.e. a push just loads the value 
+ * into D and only spills the previous top of the stack to RAM[SP] if there was one in D, and pops / arithmetic take their last
+ * operand straight from D. A push directly followed by add, sub, and or or doesn't spill D at all, the operation is applied to D 
+ * and the pushed value right away (cf. writeBinaryWithOperand), so 'push local 0, push constant 1, add, pop local 0' translates to
+ * 'D=M, D=D+1, M=D' (plus addressing) and never touches RAM[SP]. The cache is spilled before anything control flow can reach from 
+ * somewhere else (labels, function entries, return addresses).
+ * 
+ * When optimizing for size, call, return and the comparisons that don't jump straight away are not translated inline at every
+ * occurrence, but jump into shared routines instead (cf. writeSharedRoutines), which costs a few more instructions at runtime but
+ * saves ~20-40 words of ROM per call / return. Either way the ROM words used by every function are counted (cf. getROMUsage) */
+public class HackAssemblyWriter {
+	/** a pointer-segment index up to this is addressed by incrementing A instead of adding the index (doesn't need D) */
+	private static final int MAX_INCREMENTED_INDEX = 6;
+	
+	private StringBuilder asm;
+	/** the class (i.e. .jack-file) the translated commands belong to, for the static segment */
+	private String currentClassName;
+	/** the function the translated commands belong to, for labels */
+	private String currentFunctionName;
+	/** running index for the labels generated by the translation itself (return addresses, comparisons) */
+	private int labelIndex;
+	/** is the top of the VM-stack currently in D (and not in RAM[SP-1])? SP doesn't count it while it's in D */
+	private boolean topOfStackInD;
+	/** jump into shared routines for call / return / comparisons instead of translating them inline? */
+	private boolean optimizeForSize;
+	/** the shared routines that have been jumped into so far, i.e. '$CALL', '$RETURN', '$EQ', '$GT', '$LT' */
+	private HashSet<String> usedSharedRoutines;
+	/** table of (functionName, ROM words used by the function), 'Bootstrap' and 'Shared routines' are counted as functions too */
+	private HashMap<String,Integer> romUsage;
+	/** the function names in the order they were written in */
+	private ArrayList<String> functionNames;
+	
+	HackAssemblyWriter(boolean optimizeForSize) {
+		asm = new StringBuilder();
+		currentClassName = "";
+		currentFunctionName = "";
+		labelIndex = 0;
+		topOfStackInD = false;
+		this.optimizeForSize = optimizeForSize;
+		usedSharedRoutines = new HashSet<String>();
+		romUsage = new HashMap<String,Integer>();
+		functionNames = new ArrayList<String>();
+	}
+	
+	/** SP = 256, call Sys.init */
+	public void writeBootstrap() {
+		setCurrentFunctionName("Bootstrap");
+		write("@256", "D=A", "@SP", "M=D");
+		writeCall("Sys.init", 0);
+	}
+	
+	/** writes the shared routines that were used by the translated commands, call after translating all of them.
+	 * $CALL:				R13 = function address, R14 = nArgs, D = return address
+	 * $RETURN:				D = return value
+	 * $EQ / $GT / $LT:		R13 = y (x is on the stack), D = return address, returns the boolean in D */
+	public void writeSharedRoutines() {
+		if(usedSharedRoutines.isEmpty()) {
+			return;
+		}
+		setCurrentFunctionName("Shared routines");
+		if(usedSharedRoutines.contains("$CALL")) {
+			write("($CALL)", "@SP", "A=M", "M=D");
+			for(String pointer : new String[] {"LCL", "ARG", "THIS", "THAT"}) {
+				write("@" + pointer, "D=M", "@SP", "AM=M+1", "M=D");
+			}
+			write("@SP", "MD=M+1", "@LCL", "M=D", "@R14", "D=D-M", "@5", "D=D-A", "@ARG", "M=D", 
+					"@R13", "A=M", "0;JMP");
+		}
+		if(usedSharedRoutines.contains("$RETURN")) {
+			write("($RETURN)");
+			writeReturnSequence();
+		}
+		for(VMCommand.Opcode comparison : new VMCommand.Opcode[] {VMCommand.Opcode.EQ, VMCommand.Opcode.GT, VMCommand.Opcode.LT}) {
+			String ROUTINE = "$" + comparison.getName().toUpperCase();
+			if(usedSharedRoutines.contains(ROUTINE)) {
+				write("(" + ROUTINE + ")", "@R14", "M=D");
+				if(comparison == VMCommand.Opcode.EQ) {
+					write("@R13", "D=M", "@SP", "AM=M-1", "D=M-D", "@" + ROUTINE + ".TRUE", "D;JEQ");
+				} else {
+					writeSignSafeJump(comparison, false, ROUTINE + ".TRUE", ROUTINE + ".");
+				}
+				write("D=0", "@R14", "A=M", "0;JMP", 
+						"(" + ROUTINE + ".TRUE)", "D=-1", "@R14", "A=M", "0;JMP");
+			}
+		}
+	}
+	
+	/** table of (functionName, ROM words used by the function) */
+	public HashMap<String,Integer> getROMUsage() {
+		return romUsage;
+	}
+	
+	/** the names of all translated functions (plus 'Bootstrap' and 'Shared routines') in the order they were written in */
+	public ArrayList<String> getFunctionNames() {
+		return functionNames;
+	}
+	
+	/** the total amount of ROM words used */
+	public int getROMSize() {
+		int romSize = 0;
+		for(int words : romUsage.values()) {
+			romSize += words;
+		}
+		return romSize;
+	}
+	
+	/** translates the commands of one class */
+	public void writeCommands(String className, List<VMCommand> commands) throws IOException {
+		currentClassName = className;
+		for(int index = 0; index < commands.size(); index++) {
+			VMCommand command = commands.get(index);
+			VMCommand next = (index + 1 < commands.size()) ? commands.get(index + 1) : null;
+			VMCommand nextButOne = (index + 2 < commands.size()) ? commands.get(index + 2) : null;
+			asm.append("// ").append(command.toString()).append("\n");
+			switch(command.getOpcode()) {
+			case PUSH:
+				/* 'push, binary operation' computes the operation on D straight away, without spilling D to push the operand */
+				if(topOfStackInD && isBinary(next) && writeBinaryWithOperand(next.getOpcode(), command.getSegment(), command.getIndex())) {
+					index++;
+				} else {
+					writePush(command.getSegment(), command.getIndex());
+				}
+				break;
+			case POP:
+				writePop(command.getSegment(), command.getIndex());
+				break;
+			case ADD:
+				writeBinary("D=D+M");
+				break;
+			case SUB:
+				writeBinary("D=M-D");
+				break;
+			case AND:
+				writeBinary("D=D&M");
+				break;
+			case OR:
+				writeBinary("D=D|M");
+				break;
+			case NEG:
+				loadTopOfStackIntoD();
+				write("D=-D");
+				break;
+			case NOT:
+				loadTopOfStackIntoD();
+				write("D=!D");
+				break;
+			case EQ:
+			case GT:
+			case LT:
+				/* 'comparison, if-goto' and 'comparison, not, if-goto' jump on the comparison itself, without computing the boolean */
+				if(isIfGoto(next)) {
+					writeComparisonJump(command.getOpcode(), false, next.getArgument());
+					index++;
+				}
+				else if(next != null && next.getOpcode() == VMCommand.Opcode.NOT && isIfGoto(nextButOne)) {
+					writeComparisonJump(command.getOpcode(), true, nextButOne.getArgument());
+					index += 2;
+				}
+				else {
+					writeComparison(command.getOpcode());
+				}
+				break;
+			case LABEL:
+				spillTopOfStack();
+				write("(" + currentFunctionName + "$" + command.getArgument() + ")");
+				break;
+			case GOTO:
+				spillTopOfStack();
+				write("@" + currentFunctionName + "$" + command.getArgument(), "0;JMP");
+				break;
+			case IF_GOTO:
+				loadTopOfStackIntoD();
+				topOfStackInD = false;
+				write("@" + currentFunctionName + "$" + command.getArgument(), "D;JNE");
+				break;
+			case FUNCTION:
+				writeFunction(command.getArgument(), command.getIndex());
+				break;
+			case CALL:
+				writeCall(command.getArgument(), command.getIndex());
+				break;
+			case RETURN:
+				writeReturn();
+				break;
+			default:
+				throw new IOException("Invalid VM-command '" + command.toString() + "'");
+			}
+		}
+		spillTopOfStack();
+	}
+	
+	/** writes the translated program to outputFile */
+	public void writeFile(String outputFile) throws IOException {
+		FileWriter writer = new FileWriter(outputFile);
+		writer.write(asm.toString());
+		writer.close();
+	}
+	
+	
+	/** Helper functions **/
+	/** writes the given instructions and counts them towards the current function's ROM usage (labels don't take up any ROM) */
+	private void write(String... instructions) {
+		int words = 0;
+		for(String instruction : instructions) {
+			asm.append(instruction).append("\n");
+			if(!instruction.startsWith("(")) {
+				words++;
+			}
+		}
+		romUsage.put(currentFunctionName, romUsage.get(currentFunctionName) + words);
+	}
+	
+	private void setCurrentFunctionName(String functionName) {
+		currentFunctionName = functionName;
+		if(!romUsage.containsKey(functionName)) {
+			romUsage.put(functionName, 0);
+			functionNames.add(functionName);
+		}
+	}
+	
+	private boolean isBinary(VMCommand command) {
+		if(command == null) {
+			return false;
+		}
+		switch(command.getOpcode()) {
+		case ADD:
+		case SUB:
+		case AND:
+		case OR:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	private boolean isIfGoto(VMCommand command) {
+		return command != null && command.getOpcode() == VMCommand.Opcode.IF_GOTO;
+	}
+	
+	/** if the top of the stack is in D, push it onto the actual stack in RAM */
+	private void spillTopOfStack() {
+		if(topOfStackInD) {
+			write("@SP", "M=M+1", "A=M-1", "M=D");
+			topOfStackInD = false;
+		}
+	}
+	
+	/** makes sure the top of the stack is in D (popping it off the stack in RAM if it isn't) */
+	private void loadTopOfStackIntoD() {
+		if(!topOfStackInD) {
+			write("@SP", "AM=M-1", "D=M");
+			topOfStackInD = true;
+		}
+	}
+	
+	/** D = value, the previous top of the stack is spilled first */
+	private void writePush(VMWriter.Segment segment, int index) throws IOException {
+		spillTopOfStack();
+		switch(segment) {
+		case CONST:
+			if(index == 0 || index == 1) {
+				write("D=" + index);
+			} else {
+				write("@" + index, "D=A");
+			}
+			break;
+		case VAR:
+			writeAddressIntoA("LCL", index);
+			write("D=M");
+			break;
+		case ARG:
+			writeAddressIntoA("ARG", index);
+			write("D=M");
+			break;
+		case FIELD:
+			writeAddressIntoA("THIS", index);
+			write("D=M");
+			break;
+		case THAT:
+			writeAddressIntoA("THAT", index);
+			write("D=M");
+			break;
+		default:
+			write("@" + fixedAddress(segment, index), "D=M");
+		}
+		topOfStackInD = true;
+	}
+	
+	/** pops the top of the stack into segment[index] */
+	private void writePop(VMWriter.Segment segment, int index) throws IOException {
+		loadTopOfStackIntoD();
+		topOfStackInD = false;
+		switch(segment) {
+		case VAR:
+			writePopToPointerSegment("LCL", index);
+			break;
+		case ARG:
+			writePopToPointerSegment("ARG", index);
+			break;
+		case FIELD:
+			writePopToPointerSegment("THIS", index);
+			break;
+		case THAT:
+			writePopToPointerSegment("THAT", index);
+			break;
+		default:
+			write("@" + fixedAddress(segment, index), "M=D");
+		}
+	}
+	
+	/** stores D in base[index] */
+	private void writePopToPointerSegment(String base, int index) {
+		if(index <= MAX_INCREMENTED_INDEX) {
+			writeIncrementedAddressIntoA(base, index);
+			write("M=D");
+		} else {
+			write("@R13", "M=D", "@" + index, "D=A", "@" + base, "D=D+M", "@R14", "M=D", "@R13", "D=M", "@R14", "A=M", "M=D");
+		}
+	}
+	
+	/** A = base + index, may use D */
+	private void writeAddressIntoA(String base, int index) {
+		if(index <= MAX_INCREMENTED_INDEX) {
+			writeIncrementedAddressIntoA(base, index);
+		} else {
+			write("@" + index, "D=A", "@" + base, "A=D+M");
+		}
+	}
+	
+	/** A = base + index without using D, by incrementing A index times */
+	private void writeIncrementedAddressIntoA(String base, int index) {
+		write("@" + base);
+		if(index == 0) {
+			write("A=M");
+		} else {
+			write("A=M+1");
+			for(int increment = 1; increment < index; increment++) {
+				write("A=A+1");
+			}
+		}
+	}
+	
+	/** the address (or symbol) of a segment that doesn't depend on a base pointer, i.e. static, temp and pointer */
+	private String fixedAddress(VMWriter.Segment segment, int index) throws IOException {
+		switch(segment) {
+		case STATIC:
+			return currentClassName + "." + index;
+		case TEMP:
+			return Integer.toString(5 + index);
+		case POINTER:
+			return Integer.toString(3 + index);
+		default:
+			throw new IOException("Invalid segment '" + segment.getName() + "'");
+		}
+	}
+	
+	/** y is in D, x is popped off the stack into M, then D = x computation y */
+	private void writeBinary(String computation) {
+		loadTopOfStackIntoD();
+		write("@SP", "AM=M-1", computation);
+	}
+	
+	/** with x in D: D = x operation segment[index], without pushing segment[index] first. Returns false (and doesn't write anything) if 
+	 * segment[index] can't be addressed without D, i.e. a pointer-segment index above MAX_INCREMENTED_INDEX */
+	private boolean writeBinaryWithOperand(VMCommand.Opcode operation, VMWriter.Segment segment, int index) throws IOException {
+		String operator;
+		String base;
+		switch(operation) {
+		case ADD:
+			operator = "+";
+			break;
+		case SUB:
+			operator = "-";
+			break;
+		case AND:
+			operator = "&";
+			break;
+		default:
+			operator = "|";
+		}
+		switch(segment) {
+		case CONST:
+			if(index == 1 && (operator.equals("+") || operator.equals("-"))) {
+				write("D=D" + operator + "1");
+			} else {
+				write("@" + index, "D=D" + operator + "A");
+			}
+			return true;
+		case VAR:
+			base = "LCL";
+			break;
+		case ARG:
+			base = "ARG";
+			break;
+		case FIELD:
+			base = "THIS";
+			break;
+		case THAT:
+			base = "THAT";
+			break;
+		default:
+			base = null;
+		}
+		if(base == null) {
+			write("@" + fixedAddress(segment, index));
+		} else if(index <= MAX_INCREMENTED_INDEX) {
+			writeIncrementedAddressIntoA(base, index);
+		} else {
+			return false;
+		}
+		write("D=D" + operator + "M");
+		return true;
+	}
+	
+	/** the Hack jump condition that is true if (x - y) satisfies the given comparison (or its negation) */
+	private String comparisonJump(VMCommand.Opcode comparison, boolean negated) {
+		switch(comparison) {
+		case EQ:
+			return negated ? "JNE" : "JEQ";
+		case GT:
+			return negated ? "JLE" : "JGT";
+		default:
+			return negated ? "JGE" : "JLT";
+		}
+	}
+	
+	/** D = -1 if x comparison y, else 0 */
+	private void writeComparison(VMCommand.Opcode comparison) {
+		if(optimizeForSize) {
+			String ROUTINE = "$" + comparison.getName().toUpperCase();
+			String RETURN_ADDRESS = currentFunctionName + "$ret." + labelIndex;
+			labelIndex++;
+			usedSharedRoutines.add(ROUTINE);
+			loadTopOfStackIntoD();
+			write("@R13", "M=D", "@" + RETURN_ADDRESS, "D=A", "@" + ROUTINE, "0;JMP", "(" + RETURN_ADDRESS + ")");
+			return;
+		}
+		String PREFIX = currentFunctionName + "$cmp.";
+		String TRUE = PREFIX + "true." + labelIndex;
+		String END = PREFIX + "end." + labelIndex;
+		if(comparison == VMCommand.Opcode.EQ) {
+			writeBinary("D=M-D");
+			write("@" + TRUE, "D;JEQ");
+		} else {
+			loadTopOfStackIntoD();
+			write("@R13", "M=D");
+			writeSignSafeJump(comparison, false, TRUE, PREFIX);
+		}
+		labelIndex++;
+		write("D=0", "@" + END, "0;JMP", 
+				"(" + TRUE + ")", "D=-1", 
+				"(" + END + ")");
+		topOfStackInD = true;
+	}
+	
+	/** with y in R13 and x on top of the stack in RAM: pops x and jumps to target if x comparison y (or its negation) holds, 'gt' or 
+	 * 'lt' only. x - y overflows in 16 bits if x and y have different signs (e.g. 20000 - (-20000) is negative), so it's only 
+	 * computed if they have the same sign, otherwise the signs alone decide. Uses the labels prefix.'xneg|same|done'.labelIndex, the 
+	 * caller increments labelIndex */
+	private void writeSignSafeJump(VMCommand.Opcode comparison, boolean negated, String target, String prefix) {
+		String X_NEGATIVE = prefix + "xneg." + labelIndex;
+		String SAME_SIGN = prefix + "same." + labelIndex;
+		String END = prefix + "done." + labelIndex;
+		boolean holdsIfGreater = (comparison == VMCommand.Opcode.GT) != negated;
+		write("@SP", "AM=M-1", "D=M", "@" + X_NEGATIVE, "D;JLT", 
+				"@R13", "D=M", "@" + SAME_SIGN, "D;JGE", 
+				"@" + (holdsIfGreater ? target : END), "0;JMP", 
+				"(" + X_NEGATIVE + ")", "@R13", "D=M", "@" + SAME_SIGN, "D;JLT", 
+				"@" + (holdsIfGreater ? END : target), "0;JMP", 
+				"(" + SAME_SIGN + ")", "@SP", "A=M", "D=M", "@R13", "D=D-M", "@" + target, "D;" + comparisonJump(comparison, negated), 
+				"(" + END + ")");
+	}
+	
+	/** jumps to label if x comparison y (or its negation) holds, both operands are consumed */
+	private void writeComparisonJump(VMCommand.Opcode comparison, boolean negated, String label) {
+		String TARGET = currentFunctionName + "$" + label;
+		if(comparison == VMCommand.Opcode.EQ) {
+			writeBinary("D=M-D");
+			write("@" + TARGET, "D;" + comparisonJump(comparison, negated));
+		} else {
+			loadTopOfStackIntoD();
+			write("@R13", "M=D");
+			writeSignSafeJump(comparison, negated, TARGET, currentFunctionName + "$cmp.");
+			labelIndex++;
+		}
+		topOfStackInD = false;
+	}
+	
+	private void writeFunction(String name, int nLocals) {
+		spillTopOfStack();
+		setCurrentFunctionName(name);
+		write("(" + name + ")");
+		if(nLocals > 0) {
+			write("@SP", "A=M");
+			for(int local = 0; local < nLocals; local++) {
+				write("M=0", "A=A+1");
+			}
+			write("D=A", "@SP", "M=D");
+		}
+	}
+	
+	/** push returnAddress, LCL, ARG, THIS, THAT; ARG = SP - nArgs - 5; LCL = SP; goto name; (returnAddress) */
+	private void writeCall(String name, int nArgs) {
+		spillTopOfStack();
+		String RETURN_ADDRESS = currentFunctionName + "$ret." + labelIndex;
+		labelIndex++;
+		if(optimizeForSize) {
+			usedSharedRoutines.add("$CALL");
+			if(nArgs == 0 || nArgs == 1) {
+				write("D=" + nArgs);
+			} else {
+				write("@" + nArgs, "D=A");
+			}
+			write("@R14", "M=D", "@" + name, "D=A", "@R13", "M=D", "@" + RETURN_ADDRESS, "D=A", "@$CALL", "0;JMP", "(" + RETURN_ADDRESS + ")");
+			return;
+		}
+		write("@" + RETURN_ADDRESS, "D=A", "@SP", "A=M", "M=D");
+		for(String pointer : new String[] {"LCL", "ARG", "THIS", "THAT"}) {
+			write("@" + pointer, "D=M", "@SP", "AM=M+1", "M=D");
+		}
+		write("@SP", "MD=M+1", "@LCL", "M=D", "@" + (nArgs + 5), "D=D-A", "@ARG", "M=D", 
+				"@" + name, "0;JMP", 
+				"(" + RETURN_ADDRESS + ")");
+	}
+	
+	private void writeReturn() {
+		loadTopOfStackIntoD();
+		topOfStackInD = false;
+		if(optimizeForSize) {
+			usedSharedRoutines.add("$RETURN");
+			write("@$RETURN", "0;JMP");
+		} else {
+			writeReturnSequence();
+		}
+	}
+	
+	/** with the return value in D: *ARG = return value; returnAddress = *(LCL - 5); SP = ARG + 1; THAT, THIS, ARG, LCL = *(LCL - 1), ..., *(LCL - 4); 
+	 * goto returnAddress. The return value has to be kept in R15 until the return address has been read, since for nArgs = 0 *ARG is where 
+	 * the return address is */
+	private void writeReturnSequence() {
+		write("@R15", "M=D", 
+				"@LCL", "D=M", "@R13", "M=D", 
+				"@5", "A=D-A", "D=M", "@R14", "M=D", 
+				"@R15", "D=M", "@ARG", "A=M", "M=D", 
+				"D=A+1", "@SP", "M=D");
+		for(String pointer : new String[] {"THAT", "THIS", "ARG", "LCL"}) {
+			write("@R13", "AM=M-1", "D=M", "@" + pointer, "M=D");
+		}
+		write("@R14", "A=M", "0;JMP");
+	}
+}
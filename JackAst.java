@@ -0,0 +1,592 @@
+package compiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** the abstract syntax tree of one .jack-file, only built when JackCompiler.astMode is set (cf. AstCompiler).
+ * Instead of one object per node, all nodes live in one arena of int arrays, a node is just its index into them:
+ * - kindAndLine:	the node's kind (lowest 8 bits, cf. the constants below) and the line it starts at (the other 24 bits)
+ * - value:			depends on the kind, an index into the string table (names, types, operators, ...) or the value of an integerConstant
+ * - firstChild:	index of the node's first child, -1 if it has none
+ * - nextSibling:	index of the node's next sibling, -1 if it's the last child
+ * That's 16 bytes per node (plus the strings, which are interned, i.e. every name is only stored once per file).
+ *
+ * Children of the different kinds of nodes (every other kind doesn't have any, '?' means optional):
+ * CLASS (className):					CLASS_VAR_DEC*, SUBROUTINE_DEC*
+ * CLASS_VAR_DEC ('static' / 'field'):	NAME (type), NAME (varName)+
+ * SUBROUTINE_DEC (subroutineName):		NAME ('constructor' / 'function' / 'method'), NAME ('void' / type), PARAMETER_LIST, VAR_DEC*, STATEMENTS
+ * PARAMETER_LIST:						(NAME (type), NAME (varName))*
+ * VAR_DEC:								NAME (type), NAME (varName)+
+ * STATEMENTS:							LET / IF / WHILE / DO / RETURN*
+ * LET (varName):						EXPRESSION (index)?, EXPRESSION (value)
+ * IF:									EXPRESSION, STATEMENTS, STATEMENTS (else)?
+ * WHILE:								EXPRESSION, STATEMENTS
+ * DO:									CALL / QUALIFIED_CALL
+ * RETURN:								EXPRESSION?
+ * EXPRESSION:							term (OPERATOR (op) term)*
+ * ARRAY_ACCESS (varName):				EXPRESSION
+ * CALL (subroutineName):				EXPRESSION*
+ * QUALIFIED_CALL (subroutineName):		NAME (className / varName), EXPRESSION*
+ * UNARY (unaryOp):						term
+ * where a term is one of INT_CONSTANT, STRING_CONSTANT, KEYWORD_CONSTANT, VARIABLE, ARRAY_ACCESS, CALL, QUALIFIED_CALL, UNARY or
+ * EXPRESSION (for '(expression)') */
+public class JackAst {
+	public static final int CLASS = 0;
+	public static final int CLASS_VAR_DEC = 1;
+	public static final int SUBROUTINE_DEC = 2;
+	public static final int PARAMETER_LIST = 3;
+	public static final int VAR_DEC = 4;
+	public static final int STATEMENTS = 5;
+	public static final int LET = 6;
+	public static final int IF = 7;
+	public static final int WHILE = 8;
+	public static final int DO = 9;
+	public static final int RETURN = 10;
+	public static final int EXPRESSION = 11;
+	public static final int OPERATOR = 12;
+	public static final int INT_CONSTANT = 13;
+	public static final int STRING_CONSTANT = 14;
+	public static final int KEYWORD_CONSTANT = 15;
+	public static final int VARIABLE = 16;
+	public static final int ARRAY_ACCESS = 17;
+	public static final int CALL = 18;
+	public static final int QUALIFIED_CALL = 19;
+	public static final int UNARY = 20;
+	public static final int NAME = 21;
+
+	/** the int arrays every node takes up one entry of */
+	public static final int BYTES_PER_NODE = 4 * 4;
+
+	private int[] kindAndLine;
+	private int[] value;
+	private int[] firstChild;
+	private int[] nextSibling;
+	/** only needed while building the tree, to append children in constant time */
+	private int[] lastChild;
+	private int nNodes;
+	private ArrayList<String> strings;
+	private HashMap<String,Integer> stringTable;
+
+	/** the tokens of the file and their line numbers, only needed while parsing. Only the ones before 'end' belong to this tree */
+	private ArrayList<String> tokens;
+	private ArrayList<Integer> tokenLines;
+	private int position;
+	private int end;
+	private String fileName;
+	/** the node the tree starts at: the CLASS-node 0, or the SUBROUTINE_DEC-node if only one subroutine has been parsed (cf. parseSubroutine) */
+	private int root;
+	/** what the syntax error was and where, null if there wasn't one. Not printed right away, since several trees of one file 
+	 * can be parsed at once (cf. AstCompiler.compileSubroutines) */
+	private String errorMessage;
+	/** the syntax error as a Diagnostic, null if there wasn't one */
+	private Diagnostic error;
+
+	/** all the tokens of a file and their line numbers, read once and then only ever read from, so every tree of the file can be 
+	 * parsed from them at the same time (cf. findSubroutines) */
+	public static class Tokens {
+		private final ArrayList<String> tokens;
+		private final ArrayList<Integer> lines;
+
+		Tokens(JackTokenizer tokenizer) throws IOException {
+			tokens = new ArrayList<String>();
+			lines = new ArrayList<Integer>();
+			while(tokenizer.hasMoreTokens()) {
+				tokenizer.advance();
+				tokens.add(tokenizer.getCurrentToken());
+				lines.add(tokenizer.getLineNumber());
+			}
+		}
+
+		public int size() {
+			return tokens.size();
+		}
+
+		public String get(int index) {
+			return tokens.get(index);
+		}
+	}
+
+	/** thrown on the first syntax error, there's no error recovery while building the tree */
+	private static class SyntaxError extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	JackAst(String fileName) {
+		this.fileName = fileName;
+		kindAndLine = new int[256];
+		value = new int[256];
+		firstChild = new int[256];
+		nextSibling = new int[256];
+		lastChild = new int[256];
+		nNodes = 0;
+		strings = new ArrayList<String>();
+		stringTable = new HashMap<String,Integer>();
+	}
+
+	/** reads all the tokens of the tokenizer and builds the tree of the class, whose root is node 0.
+	 * Returns false if there's a syntax error (cf. getErrorMessage) */
+	public boolean parse(JackTokenizer tokenizer) throws IOException {
+		return parseClass(new Tokens(tokenizer), null);
+	}
+
+	/** builds the tree of the class, whose root is node 0. If subroutines is given (cf. findSubroutines), the subroutines are skipped,
+	 * i.e. only the class and its class variables are parsed, the subroutines are left to parseSubroutine.
+	 * Returns false if there's a syntax error (cf. getErrorMessage) */
+	public boolean parseClass(Tokens tokens, int[] subroutines) {
+		root = 0;
+		return parse(tokens, 0, tokens.size(), subroutines);
+	}
+
+	/** builds the tree of just the one subroutine declaration in the tokens from 'from' up to (excluding) 'to' (cf. findSubroutines),
+	 * whose root is getRoot(). Returns false if there's a syntax error (cf. getErrorMessage) */
+	public boolean parseSubroutine(Tokens tokens, int from, int to) {
+		root = -1;
+		return parse(tokens, from, to, null);
+	}
+
+	/** finds where the subroutines of a class start and end without parsing anything, by matching braces: a subroutine starts at 
+	 * 'constructor' / 'function' / 'method' right inside the class's body and ends after the '}' that closes its own body. Returns 
+	 * (start, end) of every subroutine in order, end being the index after its '}', or null if the braces don't match up (then there's 
+	 * a syntax error anyway, which parsing the whole class at once reports properly) */
+	public static int[] findSubroutines(Tokens tokens) {
+		ArrayList<Integer> ranges = new ArrayList<Integer>();
+		int depth = 0;
+		int start = -1;
+		for(int index = 0; index < tokens.size(); index++) {
+			String token = tokens.get(index);
+			if(token.equals("{")) {
+				depth++;
+			}
+			else if(token.equals("}")) {
+				depth--;
+				if(depth == 1 && start >= 0) {
+					ranges.add(start);
+					ranges.add(index + 1);
+					start = -1;
+				}
+				else if(depth < 0) {
+					return null;
+				}
+			}
+			else if(depth == 1 && start < 0 && (token.equals("constructor") || token.equals("function") || token.equals("method"))) {
+				start = index;
+			}
+		}
+		if(depth != 0 || start >= 0) {
+			return null;
+		}
+		int[] subroutines = new int[ranges.size()];
+		for(int index = 0; index < subroutines.length; index++) {
+			subroutines[index] = ranges.get(index);
+		}
+		return subroutines;
+	}
+
+	private boolean parse(Tokens tokens, int from, int to, int[] subroutines) {
+		this.tokens = tokens.tokens;
+		this.tokenLines = tokens.lines;
+		position = from;
+		end = to;
+		boolean parsed;
+		try {
+			if(root == 0) {
+				parseClass(subroutines);
+			} else {
+				root = parseSubroutineDec(-1);
+				if(position != end) {
+					throw syntaxError("end of subroutine");
+				}
+			}
+			parsed = true;
+		} catch(SyntaxError e) {
+			parsed = false;
+		}
+		this.tokens = null;
+		this.tokenLines = null;
+		lastChild = null;
+		return parsed;
+	}
+
+	public int getRoot() {
+		return root;
+	}
+
+	/** the syntax error, null if there wasn't one */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/** the syntax error as a Diagnostic, null if there wasn't one */
+	public Diagnostic getError() {
+		return error;
+	}
+
+	public int getNodeCount() {
+		return nNodes;
+	}
+
+	/** memory used by the nodes (without the strings) */
+	public int getNodeBytes() {
+		return nNodes * BYTES_PER_NODE;
+	}
+
+	public int kind(int node) {
+		return kindAndLine[node] & 0xFF;
+	}
+
+	public int line(int node) {
+		return kindAndLine[node] >>> 8;
+	}
+
+	/** the node's name / type / operator / keyword / string, cf. the description of the kinds */
+	public String text(int node) {
+		return strings.get(value[node]);
+	}
+
+	/** the value of an INT_CONSTANT */
+	public int intValue(int node) {
+		return value[node];
+	}
+
+	public int firstChild(int node) {
+		return firstChild[node];
+	}
+
+	public int nextSibling(int node) {
+		return nextSibling[node];
+	}
+
+	/** the amount of children of a node */
+	public int childCount(int node) {
+		int count = 0;
+		for(int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+			count++;
+		}
+		return count;
+	}
+
+
+	/** Parser **/
+	/** subroutines: cf. parseClass(Tokens, int[]) */
+	private void parseClass(int[] subroutines) throws SyntaxError {
+		expect("class");
+		int classNode = newNode(CLASS, identifier());
+		expect("{");
+		while(peek("static") || peek("field")) {
+			int classVarDec = addChild(classNode, newNode(CLASS_VAR_DEC, next()));
+			parseTypeAndNames(classVarDec);
+		}
+		int subroutine = 0;
+		while(peek("constructor") || peek("function") || peek("method")) {
+			if(subroutines == null) {
+				parseSubroutineDec(classNode);
+			} else {
+				/* the class's body only consists of class variables and subroutines, so it's at the next one's start */
+				position = subroutines[2 * subroutine + 1];
+				subroutine++;
+			}
+		}
+		expect("}");
+	}
+
+	/** parses the subroutine declaration and adds it to classNode's children (unless classNode is -1), returns its SUBROUTINE_DEC-node */
+	private int parseSubroutineDec(int classNode) throws SyntaxError {
+		int kind = newNode(NAME, next());
+		int returnType = newNode(NAME, type(true));
+		int subroutineDec = newNode(SUBROUTINE_DEC, identifier());
+		if(classNode >= 0) {
+			addChild(classNode, subroutineDec);
+		}
+		addChild(subroutineDec, kind);
+		addChild(subroutineDec, returnType);
+
+		expect("(");
+		int parameterList = addChild(subroutineDec, newNode(PARAMETER_LIST, ""));
+		if(!peek(")")) {
+			addChild(parameterList, newNode(NAME, type(false)));
+			addChild(parameterList, newNode(NAME, identifier()));
+			while(peek(",")) {
+				next();
+				addChild(parameterList, newNode(NAME, type(false)));
+				addChild(parameterList, newNode(NAME, identifier()));
+			}
+		}
+		expect(")");
+
+		expect("{");
+		while(peek("var")) {
+			next();
+			parseTypeAndNames(addChild(subroutineDec, newNode(VAR_DEC, "")));
+		}
+		addChild(subroutineDec, parseStatements());
+		expect("}");
+		return subroutineDec;
+	}
+
+	/** type varName (',' varName)* ';' */
+	private void parseTypeAndNames(int parent) throws SyntaxError {
+		addChild(parent, newNode(NAME, type(false)));
+		addChild(parent, newNode(NAME, identifier()));
+		while(peek(",")) {
+			next();
+			addChild(parent, newNode(NAME, identifier()));
+		}
+		expect(";");
+	}
+
+	private int parseStatements() throws SyntaxError {
+		int statements = newNode(STATEMENTS, "");
+		while(true) {
+			if(peek("let")) {
+				next();
+				int let = addChild(statements, newNode(LET, identifier()));
+				if(peek("[")) {
+					next();
+					addChild(let, parseExpression());
+					expect("]");
+				}
+				expect("=");
+				addChild(let, parseExpression());
+				expect(";");
+			} else if(peek("if")) {
+				int ifStatement = addChild(statements, newNode(IF, next()));
+				expect("(");
+				addChild(ifStatement, parseExpression());
+				expect(")");
+				expect("{");
+				addChild(ifStatement, parseStatements());
+				expect("}");
+				if(peek("else")) {
+					next();
+					expect("{");
+					addChild(ifStatement, parseStatements());
+					expect("}");
+				}
+			} else if(peek("while")) {
+				int whileStatement = addChild(statements, newNode(WHILE, next()));
+				expect("(");
+				addChild(whileStatement, parseExpression());
+				expect(")");
+				expect("{");
+				addChild(whileStatement, parseStatements());
+				expect("}");
+			} else if(peek("do")) {
+				int doStatement = addChild(statements, newNode(DO, next()));
+				int line = currentLine();
+				addChild(doStatement, parseSubroutineCall(identifier(), line));
+				expect(";");
+			} else if(peek("return")) {
+				int returnStatement = addChild(statements, newNode(RETURN, next()));
+				if(!peek(";")) {
+					addChild(returnStatement, parseExpression());
+				}
+				expect(";");
+			} else {
+				return statements;
+			}
+		}
+	}
+
+	private int parseExpression() throws SyntaxError {
+		int expression = newNode(EXPRESSION, "");
+		addChild(expression, parseTerm());
+		while(isOperator(current())) {
+			addChild(expression, newNode(OPERATOR, next()));
+			addChild(expression, parseTerm());
+		}
+		return expression;
+	}
+
+	private int parseTerm() throws SyntaxError {
+		String token = current();
+		int line = currentLine();
+		if(token.isEmpty()) {
+			throw syntaxError("term");
+		}
+		if(Character.isDigit(token.charAt(0))) {
+			int intConstant;
+			try {
+				intConstant = Integer.parseInt(token);
+			} catch(NumberFormatException e) {
+				intConstant = -1;
+			}
+			if(intConstant < 0 || intConstant > 32767) {
+				throw syntaxError("INT_CONST (0 - 32767)");
+			}
+			next();
+			int node = newNode(INT_CONSTANT, "");
+			value[node] = intConstant;
+			return node;
+		}
+		if(token.charAt(0) == '"') {
+			next();
+			return newNode(STRING_CONSTANT, token.substring(1, token.length() - 1));
+		}
+		switch(token) {
+		case("true"):
+		case("false"):
+		case("null"):
+		case("this"):
+			return newNode(KEYWORD_CONSTANT, next());
+		case("("):
+			next();
+			int expression = parseExpression();
+			expect(")");
+			return expression;
+		case("-"):
+		case("~"):
+			int unary = newNode(UNARY, next());
+			addChild(unary, parseTerm());
+			return unary;
+		}
+		String name = identifier();
+		if(peek("[")) {
+			next();
+			int arrayAccess = newNode(ARRAY_ACCESS, name);
+			addChild(arrayAccess, parseExpression());
+			expect("]");
+			return arrayAccess;
+		}
+		if(peek("(") || peek(".")) {
+			return parseSubroutineCall(name, line);
+		}
+		return newNode(VARIABLE, name);
+	}
+
+	/** subroutineName '(' expressionList ')' or (className / varName) '.' subroutineName '(' expressionList ')', where the first name
+	 * has already been read */
+	private int parseSubroutineCall(String name, int line) throws SyntaxError {
+		int call;
+		if(peek(".")) {
+			next();
+			call = newNode(QUALIFIED_CALL, identifier());
+			addChild(call, newNode(NAME, name));
+		} else {
+			call = newNode(CALL, name);
+		}
+		kindAndLine[call] = (line << 8) | kind(call);
+		expect("(");
+		if(!peek(")")) {
+			addChild(call, parseExpression());
+			while(peek(",")) {
+				next();
+				addChild(call, parseExpression());
+			}
+		}
+		expect(")");
+		return call;
+	}
+
+
+	/** Helper functions **/
+	private int newNode(int kind, String text) {
+		if(nNodes == value.length) {
+			int capacity = nNodes * 2;
+			kindAndLine = Arrays.copyOf(kindAndLine, capacity);
+			value = Arrays.copyOf(value, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+			lastChild = Arrays.copyOf(lastChild, capacity);
+		}
+		int node = nNodes;
+		nNodes++;
+		kindAndLine[node] = (currentLine() << 8) | kind;
+		Integer stringIndex = stringTable.get(text);
+		if(stringIndex == null) {
+			stringIndex = strings.size();
+			strings.add(text);
+			stringTable.put(text, stringIndex);
+		}
+		value[node] = stringIndex;
+		firstChild[node] = -1;
+		nextSibling[node] = -1;
+		lastChild[node] = -1;
+		return node;
+	}
+
+	/** appends child to parent's children, returns child */
+	private int addChild(int parent, int child) {
+		if(lastChild[parent] < 0) {
+			firstChild[parent] = child;
+		} else {
+			nextSibling[lastChild[parent]] = child;
+		}
+		lastChild[parent] = child;
+		return child;
+	}
+
+	private String current() {
+		return (position < end) ? tokens.get(position) : "";
+	}
+
+	private int currentLine() {
+		if(tokenLines == null || tokenLines.isEmpty()) {
+			return 0;
+		}
+		return tokenLines.get(Math.min(position, end - 1));
+	}
+
+	private boolean peek(String token) {
+		return current().equals(token);
+	}
+
+	/** returns the current token and moves on to the next one */
+	private String next() {
+		String token = current();
+		position++;
+		return token;
+	}
+
+	private void expect(String token) throws SyntaxError {
+		if(!peek(token)) {
+			throw syntaxError("'" + token + "'");
+		}
+		next();
+	}
+
+	private String identifier() throws SyntaxError {
+		String token = current();
+		if(token.isEmpty() || !token.matches("[A-Za-z_]\\w*") || isKeyword(token)) {
+			throw syntaxError("identifier");
+		}
+		return next();
+	}
+
+	/** 'int' / 'char' / 'boolean' / className, or also 'void' if voidAllowed */
+	private String type(boolean voidAllowed) throws SyntaxError {
+		String token = current();
+		if(token.equals("int") || token.equals("char") || token.equals("boolean") || (voidAllowed && token.equals("void"))) {
+			return next();
+		}
+		return identifier();
+	}
+
+	private boolean isOperator(String token) {
+		switch(token) {
+		case("+"): case("-"): case("*"): case("/"): case("&"): case("|"): case("<"): case(">"): case("="):
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private boolean isKeyword(String token) {
+		switch(token) {
+		case("class"): case("constructor"): case("function"): case("method"): case("field"): case("static"): case("var"):
+		case("int"): case("char"): case("boolean"): case("void"): case("true"): case("false"): case("null"): case("this"):
+		case("let"): case("do"): case("if"): case("else"): case("while"): case("return"):
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private SyntaxError syntaxError(String expected) {
+		errorMessage = "Syntax Error: Expected " + expected + "\n"
+						+ "In '" + fileName + "' at line: " + currentLine() + ": Error on this token: '" + current() + "'.";
+		error = new Diagnostic(fileName, currentLine(), current(), "Syntax Error: Expected " + expected);
+		return new SyntaxError();
+	}
+}
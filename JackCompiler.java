@@ -2,6 +2,7 @@ package compiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 
 public class JackCompiler {
@@ -9,12 +10,59 @@ public class JackCompiler {
 	public static JackTokenizer tokenizer;
 	/** the main driver of the compilation process */
 	public static CompilationEngine compilationEngine;
+	/** the VM-code of every file compiled in the current translate-run, written to the output-files once all of them are compiled */
+	public static VMProgram program;
+	/** every error found in the current translate-run, in the order of the files they were found in (cf. CompilationEngine.getDiagnostics) */
+	public static ArrayList<Diagnostic> diagnostics;
 	/** does the given path represent a directory? (or just a single file?) */
 	public static boolean isDirectory;
 	/** index of the file the compiler is at right now in the compilation process */
 	public static int directoryIndex;
 	/** length of the given directory */
 	public static int directoryLength;
+	/** if set, identical string literals within a class are only constructed once and then reused (cf. CompilationEngine.compileStringConstant),
+	 * instead of constructing a new String-object every time the literal is evaluated. Off by default, since the reused String-object
+	 * is shared, i.e. a program that changes or disposes a string literal would then change/dispose it for every other use of that literal too */
+	public static boolean poolStringLiterals;
+	/** if set, the compiler writes .vmb-files in the compact binary format (cf. VMBinaryWriter) instead of plain .vm text */
+	public static boolean binaryVMOutput;
+	/** if set, subroutines that can't be reached from the program's entry point are removed from the output (cf. VMProgram.eliminateDeadSubroutines).
+	 * Only makes sense when translating a whole program, i.e. a directory that contains Main.jack */
+	public static boolean eliminateDeadSubroutines;
+	/** subroutines without any calls in them, whose body has at most this many VM-commands, are inlined at their call sites
+	 * (cf. VMProgram.inlineSmallSubroutines). 0 turns inlining off */
+	public static int inlineThreshold;
+	/** if set, locals whose lifetimes never overlap share the same 'local' slot, which shrinks the functions' nLocals (cf. VMProgram.packLocalSlots) */
+	public static boolean packLocalSlots;
+	/** if set, the whole program is translated straight to one Hack assembly file (cf. HackAssemblyWriter) instead of .vm-files. 
+	 * The .asm-file is named after the directory (or the file, if the input is just one file) */
+	public static boolean assemblyOutput;
+	/** if set, the assembly jumps into shared call / return / comparison routines instead of translating them inline at every occurrence, 
+	 * which trades a few instructions per call for a lot less ROM. Only used together with assemblyOutput */
+	public static boolean optimizeAssemblyForSize;
+	/** if set, the ROM words used by every function are printed after translating to assembly */
+	public static boolean reportROMUsage;
+	/** if set, every file is parsed into an abstract syntax tree first and compiled from that (cf. AstCompiler) instead of being 
+	 * compiled in one single pass by CompilationEngine, which stays the default since it's faster */
+	public static boolean astMode;
+	/** if set, the declarations of the whole program are written to a .jsym-file (cf. SymbolIndex), named just like the .asm-file */
+	public static boolean writeSymbolIndex;
+	/** if set, the files are only checked: they're parsed and the checks across files (missing declarations, conflicting uses of
+	 * subroutines) are run, but no VM-code is generated and no output-file is written. Prints the errors and how long each file took.
+	 * Always uses CompilationEngine, i.e. astMode is ignored */
+	public static boolean checkSyntaxOnly;
+	/** if more than 1, the subroutines of each class are compiled in parallel on that many threads (cf. AstCompiler.compileSubroutines).
+	 * Only used together with astMode */
+	public static int parallelSubroutines;
+	/** if set, translate runs on a thread of its own with a stack of this many bytes (and so do the threads of parallelSubroutines).
+	 * Parsing and compiling recurse once per nested expression / statement, so machine-generated files nested a couple of thousand
+	 * levels deep overflow the default stack. 64 MB are enough for a nesting-depth of about 50000 */
+	public static long stackSize;
+	/** if set, translate records how long each phase took for each file along with a couple of counters (cf. CompilerStatistics) in 
+	 * statistics, and writes them as JSON next to the output, e.g. Pong/Pong.stats.json */
+	public static boolean collectStatistics;
+	/** the statistics of the last translate, null unless collectStatistics is set */
+	public static CompilerStatistics statistics;
 	
 	/** Scans input path and determines if the path is a directory or just a singular file. "isDirectory" is then adjusted accordingly.
 	 *Outputs a String-Array that holds all the elements, ending in .vm, or the singular .vm file. 
@@ -47,8 +95,55 @@ public class JackCompiler {
 	* reallocated to a new JackTokenizer / CompilationEngine object as the program moves on to translate another .jack-file into a parsetree
 	* in .xml format */
 	public static void translate(String input) throws IOException {
+		if(stackSize <= 0) {
+			translateOnThisThread(input);
+			return;
+		}
+		
+		Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, () -> {
+			try {
+				translateOnThisThread(input);
+			} catch(Throwable t) {
+				failure[0] = t;
+			}
+		}, "JackCompiler", stackSize);
+		thread.start();
+		try {
+			thread.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while translating '" + input + "'");
+		}
+		if(failure[0] instanceof IOException) {
+			throw (IOException) failure[0];
+		}
+		if(failure[0] instanceof RuntimeException) {
+			throw (RuntimeException) failure[0];
+		}
+		if(failure[0] instanceof Error) {
+			throw (Error) failure[0];
+		}
+	}
+	
+	private static void translateOnThisThread(String input) throws IOException {
+		statistics = collectStatistics ? new CompilerStatistics(input) : null;
+		long start = System.nanoTime();
+		compileProgram(input);
+		if(statistics != null && !statistics.getFiles().isEmpty()) {
+			statistics.finish(System.nanoTime() - start, program);
+			statistics.write(programOutputFile(input, CompilerStatistics.FILE_EXTENSION));
+		}
+	}
+	
+	private static void compileProgram(String input) throws IOException {
 		String[] directory = directory2StringArray(input);
 		if(directory.length > 0) {
+			CompilationEngine.startProgram();
+			program = new VMProgram();
+			diagnostics = new ArrayList<Diagnostic>();
+			int nAstNodes = 0;
+			int nAstNodeBytes = 0;
 			for(int directoryIndex = 0; directoryIndex < directory.length; directoryIndex++) {
 				
 				//set variables
@@ -56,19 +151,144 @@ public class JackCompiler {
 				JackCompiler.directoryLength = directory.length;
 				
 				//translate
+				long start = System.nanoTime();
+				long linkingNanos = (statistics != null) ? statistics.getLinkingNanos() : 0;
 				tokenizer = new JackTokenizer(directory[directoryIndex]);
-				compilationEngine = new CompilationEngine(directory[directoryIndex], directory[directoryIndex].replace(".jack", ".vm"));
-				
-				//close
-				tokenizer.close();
-				compilationEngine.close();
+				if(checkSyntaxOnly) {
+					compilationEngine = new CompilationEngine(directory[directoryIndex], directory[directoryIndex].replace(".jack", outputFileExtension()));
+					tokenizer.close();
+					long nanos = System.nanoTime() - start;
+					diagnostics.addAll(compilationEngine.getDiagnostics());
+					System.out.println("Checked '" + new File(directory[directoryIndex]).getName() + "' in " + String.format("%.2f", nanos / 1e6) + " ms, " 
+										+ compilationEngine.getDiagnostics().size() + " error(s)");
+				}
+				else if(astMode) {
+					AstCompiler astCompiler = new AstCompiler(directory[directoryIndex], directory[directoryIndex].replace(".jack", outputFileExtension()), 
+																tokenizer, CompilationEngine.getRegistry());
+					tokenizer.close();
+					nAstNodes += astCompiler.getNodeCount();
+					nAstNodeBytes += astCompiler.getNodeBytes();
+					diagnostics.addAll(astCompiler.getDiagnostics());
+					if(astCompiler.succeeded()) {
+						program.add(astCompiler.getVMWriter());
+					}
+				}
+				else {
+					compilationEngine = new CompilationEngine(directory[directoryIndex], directory[directoryIndex].replace(".jack", outputFileExtension()));
+					
+					//close
+					tokenizer.close();
+					compilationEngine.close();
+					diagnostics.addAll(compilationEngine.getDiagnostics());
+					program.add(compilationEngine.getVMWriter());
+				}
 				
+				if(statistics != null) {
+					File file = new File(directory[directoryIndex]);
+					statistics.addFile(file.getName(), file.length(), tokenizer, System.nanoTime() - start, statistics.getLinkingNanos() - linkingNanos);
+				}
+			}
+			if(checkSyntaxOnly) {
+				if(diagnostics.isEmpty()) {
+					System.out.println("No errors");
+				}
+				else {
+					System.out.println(diagnostics.size() + " error(s):");
+					for(Diagnostic diagnostic : diagnostics) {
+						System.out.println(diagnostic);
+					}
+				}
+				return;
+			}
+			
+			if(astMode) {
+				System.out.println("AST: " + nAstNodes + " nodes, " + nAstNodeBytes + " bytes (" + JackAst.BYTES_PER_NODE + " bytes per node)");
+				long start = System.nanoTime();
+				/* CompilationEngine reports these where the subroutine is used or at the end of the last file, AstCompiler only once every 
+				 * file is compiled, so there's no line to point to. They're errors all the same */
+				for(String conflict : CompilationEngine.getRegistry().getConflicts()) {
+					String message = "Subroutine '" + conflict + "' has been used at least twice (either called and/or declared) as different kinds or with different amounts of parameters";
+					System.out.println(message);
+					diagnostics.add(new Diagnostic(conflict.substring(0, conflict.indexOf('.')), 0, conflict, message));
+				}
+				/* a missing class has no file of its own, so like CompilationEngine these are reported on the last file */
+				String lastFileName = new File(directory[directory.length - 1]).getName().replace(".jack", "");
+				for(String subroutine : CompilationEngine.getRegistry().getMissingSubroutines()) {
+					String message = "Missing declaration for subroutine '" + subroutine + "'";
+					System.out.println(message);
+					diagnostics.add(new Diagnostic(lastFileName, 0, subroutine, message));
+				}
+				for(String className : CompilationEngine.getRegistry().getMissingClasses()) {
+					String message = "Missing declaration for class '" + className + "'";
+					System.out.println(message);
+					diagnostics.add(new Diagnostic(lastFileName, 0, className, message));
+				}
+				if(statistics != null) {
+					statistics.addLinkingNanos(System.nanoTime() - start);
+				}
+			}
+			
+			/* the VM-code of a file with errors is just whatever could still be compiled around them, so nothing gets written */
+			if(!diagnostics.isEmpty()) {
+				System.out.println(diagnostics.size() + " error(s), no output written:");
+				for(Diagnostic diagnostic : diagnostics) {
+					System.out.println(diagnostic);
+				}
+				return;
+			}
+			
+			//whole-program optimizations
+			long start = System.nanoTime();
+			if(inlineThreshold > 0) {
+				program.inlineSmallSubroutines(inlineThreshold, CompilationEngine.getRegistry());
+			}
+			if(packLocalSlots) {
+				program.packLocalSlots();
+			}
+			if(eliminateDeadSubroutines) {
+				program.eliminateDeadSubroutines();
+			}
+			if(statistics != null) {
+				statistics.addOptimizingNanos(System.nanoTime() - start);
+			}
+			
+			//write
+			if(assemblyOutput) {
+				start = System.nanoTime();
+				program.writeAssembly(programOutputFile(input, ".asm"), optimizeAssemblyForSize, reportROMUsage);
+				if(statistics != null) {
+					statistics.addProgramWritingNanos(System.nanoTime() - start);
+				}
+			} else {
+				program.write();
+			}
+			if(writeSymbolIndex) {
+				start = System.nanoTime();
+				SymbolIndex.write(programOutputFile(input, SymbolIndex.FILE_EXTENSION), CompilationEngine.getRegistry());
+				if(statistics != null) {
+					statistics.addProgramWritingNanos(System.nanoTime() - start);
+				}
 			}
 		} else {
 			System.out.println("Path contains no .jack-files");
 		}
 	}
 	
+	/** the file for output that covers the whole program, e.g. the .asm-file: input/inputDirectoryName.extension if input is a directory,
+	 * input.extension (instead of input.jack) if it's a file */
+	private static String programOutputFile(String input, String extension) throws IOException {
+		File file = new File(input).getCanonicalFile();
+		if(isDirectory) {
+			return new File(file, file.getName() + extension).getPath();
+		}
+		return file.getPath().replace(".jack", extension);
+	}
+	
+	/** .vm or .vmb, depending on binaryVMOutput */
+	private static String outputFileExtension() {
+		return binaryVMOutput ? VMBinaryWriter.FILE_EXTENSION : ".vm";
+	}
+	
 	public static void main(String[] args) throws IOException {
 		translate("E:\\nand2tetris\\nand2tetris\\tools\\Pong");
 	}
@@ -8,21 +8,21 @@ import java.util.HashMap;
 /** tokenizes the given input file */
 public class JackTokenizer {
 	
-	private static FileReader reader;
-	private static String currentToken;
+	private FileReader reader;
+	private String currentToken;
 	private char currentChar;
-	private static StringBuilder sb; 
-	/** a table of the token-types KEYWORD and SYMBOL */
+	private StringBuilder sb; 
+	/** a table of the token-types KEYWORD and SYMBOL, only read after it's been filled, so all tokenizers share it */
 	private static HashMap<String,String> tokenTypeTable;
 	/** is the current token '/'? */
-	private static boolean tokenIsSlash;
+	private boolean tokenIsSlash;
 	private int lineNumber;
+	/** the amount of tokens read so far, and the nanoseconds spent reading them (only measured when JackCompiler.collectStatistics is set) */
+	private long nTokens;
+	private long lexingNanos;
 
 	static {
-		currentToken = null;
-		sb = new StringBuilder();
 		tokenTypeTable = new HashMap<String,String>();
-		tokenIsSlash = false;
 		
 		//	KEYWORDS
 		tokenTypeTable.put("class", "KEYWORD");
@@ -70,7 +70,10 @@ public class JackTokenizer {
 	}
 	
 	JackTokenizer(String inputFile) throws FileNotFoundException{
-		JackTokenizer.reader = new FileReader(inputFile);
+		reader = new FileReader(inputFile);
+		currentToken = null;
+		sb = new StringBuilder();
+		tokenIsSlash = false;
 		lineNumber = 1;
 		currentChar = ' '; //so its not initialized to whitespace
 	}
@@ -87,8 +90,26 @@ public class JackTokenizer {
 		return lineNumber; 
 	}
 	
+	public long getTokenCount() {
+		return nTokens;
+	}
+	
+	public long getLexingNanos() {
+		return lexingNanos;
+	}
+	
 	// checks if inputFile has more tokens
 	public boolean hasMoreTokens() throws IOException {
+		if(JackCompiler.statistics == null) {
+			return hasMoreCharacters();
+		}
+		long start = System.nanoTime();
+		boolean hasMoreTokens = hasMoreCharacters();
+		lexingNanos += System.nanoTime() - start;
+		return hasMoreTokens;
+	}
+	
+	private boolean hasMoreCharacters() throws IOException {
 		this.skipWhitespace();
 		if((int)currentChar == 65535) { // value comes from: (int)((char)reader.read()), which, if reader.read() returns -1 comes out to be 65535 for whatever reason 
 			return false;
@@ -100,6 +121,17 @@ public class JackTokenizer {
 	
 	/** gets the next token **/
 	public void advance() throws IOException {
+		nTokens++;
+		if(JackCompiler.statistics == null) {
+			readToken();
+			return;
+		}
+		long start = System.nanoTime();
+		readToken();
+		lexingNanos += System.nanoTime() - start;
+	}
+	
+	private void readToken() throws IOException {
 		boolean isString = false;
 		if(!tokenIsSlash) {
 			if(tokenTypeTable.get(((Character)(currentChar)).toString()) != null) {
@@ -139,7 +171,12 @@ public class JackTokenizer {
 		//	if token == "someString" -out> STRING_CONST
 		if(token.charAt(0) == '"' && token.charAt(token.length()-1) == '"') {
 			//	token shouldn't contain any double quotes or newlines thus the difference in valid String constants must be strictly 2
-			int difference = token.length() - token.replaceAll("\n","").replaceAll("\"","").length();
+			int difference = 0;
+			for(int index = 0; index < token.length(); index++) {
+				if(token.charAt(index) == '\n' || token.charAt(index) == '"') {
+					difference++;
+				}
+			}
 			if(difference == 2) {
 				return "STRING_CONST";
 			}
@@ -174,7 +211,7 @@ public class JackTokenizer {
 			return "SYMBOL";
 		}
 		
-		if(token.matches("\\w++")) {
+		if(isWord(token)) {
 			return "IDENTIFIER";
 		}
 		else {
@@ -183,6 +220,18 @@ public class JackTokenizer {
 		}	
 	}
 	
+	/** does token only consist of word characters (i.e. [a-zA-Z_0-9], what '\\w' matches)? Checked by hand since tokenType is called
+	 * for pretty much every token and String.matches would compile a new Pattern every single time */
+	private boolean isWord(String token) {
+		for(int index = 0; index < token.length(); index++) {
+			char c = token.charAt(index);
+			if(!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_')) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	//	only call if tokenType is SYMBOL
 	public char symbol() {
 		return currentToken.toCharArray()[0];
@@ -204,7 +253,7 @@ public class JackTokenizer {
 	}
 	
 	public void close() throws IOException {
-		JackTokenizer.reader.close();
+		reader.close();
 	}
 	
 
@@ -0,0 +1,58 @@
+package compiler;
+
+/** the operators of Jack expressions, named after the VM-command each one is compiled to (cf. VMWriter.writeArithmetic).
+ * '-' is SUB as a binary operator and NEG as a unary one, MULTIPLY and DIVIDE end up as calls to Math.multiply / Math.divide */
+public enum Operator {
+	ADD(VMCommand.Opcode.ADD), SUB(VMCommand.Opcode.SUB), MULTIPLY(null), DIVIDE(null), AND(VMCommand.Opcode.AND), OR(VMCommand.Opcode.OR),
+	LT(VMCommand.Opcode.LT), GT(VMCommand.Opcode.GT), EQ(VMCommand.Opcode.EQ), NEG(VMCommand.Opcode.NEG), NOT(VMCommand.Opcode.NOT);
+
+	/** values() copies the array every time it's called, this one is only built once */
+	private static final Operator[] OPERATORS = values();
+	
+	/** the VM-command, null for MULTIPLY and DIVIDE, which are calls */
+	private final VMCommand.Opcode opcode;
+	
+	Operator(VMCommand.Opcode opcode) {
+		this.opcode = opcode;
+	}
+	
+	public VMCommand.Opcode getOpcode() {
+		return opcode;
+	}
+
+	/** the operator with the given ordinal, i.e. the other way around of ordinal() */
+	public static Operator fromOrdinal(int ordinal) {
+		return OPERATORS[ordinal];
+	}
+
+	/** the binary operator 'token' stands for, null if it isn't one */
+	public static Operator binary(String token) {
+		if(token.length() != 1) {
+			return null;
+		}
+		switch(token.charAt(0)) {
+		case('+'): return ADD;
+		case('-'): return SUB;
+		case('*'): return MULTIPLY;
+		case('/'): return DIVIDE;
+		case('&'): return AND;
+		case('|'): return OR;
+		case('<'): return LT;
+		case('>'): return GT;
+		case('='): return EQ;
+		default: return null;
+		}
+	}
+
+	/** the unary operator 'token' stands for, null if it isn't one */
+	public static Operator unary(String token) {
+		if(token.length() != 1) {
+			return null;
+		}
+		switch(token.charAt(0)) {
+		case('-'): return NEG;
+		case('~'): return NOT;
+		default: return null;
+		}
+	}
+}
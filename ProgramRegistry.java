@@ -0,0 +1,302 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** the program-wide table of every subroutine and class that has been declared or used (called / used as a type) so far,
+ * shared by all the compiled files. Class- and subroutine-names are interned to int ids once, a subroutine is then looked up
+ * by its (class id, subroutine id) pair, so no 'className.subroutineName' Strings have to be built for that.
+ * Everything is kept in ConcurrentHashMaps, i.e. it can be updated by several compilations at once without one global lock
+ * (ConcurrentHashMap only locks the one bin that's being updated). Conflicting uses of a subroutine (different kinds or nArgs) are
+ * collected in a sorted set, so they're reported the same way no matter in which order the compilations recorded them */
+public class ProgramRegistry {
+	/** the kinds of subroutines, along with the keyword each one is declared with */
+	public enum SubroutineKind {
+		CONSTRUCTOR("constructor"), FUNCTION("function"), METHOD("method");
+		
+		private final String keyword;
+		
+		SubroutineKind(String keyword) {
+			this.keyword = keyword;
+		}
+		
+		public String getKeyword() {
+			return keyword;
+		}
+		
+		/** the kind declared with 'keyword', null if it isn't 'constructor', 'function' or 'method' */
+		public static SubroutineKind fromKeyword(String keyword) {
+			switch(keyword) {
+			case("constructor"): return CONSTRUCTOR;
+			case("function"): return FUNCTION;
+			case("method"): return METHOD;
+			default: return null;
+			}
+		}
+	}
+	
+	/** what's known about one subroutine: its kind, nArgs and whether it's been declared
+	 * or only called so far. The return type ('void' or a type) is only known once it's been declared, null until then */
+	public static class Subroutine {
+		private final int classId;
+		private final int subroutineId;
+		private final String className;
+		private final String subroutineName;
+		private final SubroutineKind kind;
+		private final int nArgs;
+		private final boolean declared;
+		private final String returnType;
+
+		Subroutine(int classId, int subroutineId, String className, String subroutineName, SubroutineKind kind, int nArgs, boolean declared, String returnType) {
+			this.classId = classId;
+			this.subroutineId = subroutineId;
+			this.className = className;
+			this.subroutineName = subroutineName;
+			this.kind = kind;
+			this.nArgs = nArgs;
+			this.declared = declared;
+			this.returnType = returnType;
+		}
+
+		public int getClassId() {
+			return classId;
+		}
+
+		public int getSubroutineId() {
+			return subroutineId;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getSubroutineName() {
+			return subroutineName;
+		}
+
+		/** 'className.subroutineName', i.e. the name of the subroutine's VM-function */
+		public String getFunctionName() {
+			return className + "." + subroutineName;
+		}
+
+		public SubroutineKind getKind() {
+			return kind;
+		}
+
+		public int getNArgs() {
+			return nArgs;
+		}
+
+		public boolean isDeclared() {
+			return declared;
+		}
+
+		public String getReturnType() {
+			return returnType;
+		}
+
+		/** does using the subroutine as 'kind' with 'nArgs' contradict this use of it? Constructors are called just like functions,
+		 * so those two kinds don't contradict each other */
+		public boolean conflictsWith(SubroutineKind kind, int nArgs) {
+			return nArgs != this.nArgs || kindsConflict(this.kind, kind);
+		}
+
+		private static boolean kindsConflict(SubroutineKind kind1, SubroutineKind kind2) {
+			if(kind1 == kind2) {
+				return false;
+			}
+			return kind1 == SubroutineKind.METHOD || kind2 == SubroutineKind.METHOD;
+		}
+	}
+
+	/** table of (name, id) of every class- and subroutine-name, and the other way around */
+	private final ConcurrentHashMap<String,Integer> ids;
+	private final ConcurrentHashMap<Integer,String> names;
+	private final AtomicInteger nextId;
+	/** table of ((class id, subroutine id), subroutine), cf. key */
+	private final ConcurrentHashMap<Long,Subroutine> subroutines;
+	/** table of (class id, has the class been declared?), classes that have only been used (as a type or in a subroutine call) are false */
+	private final ConcurrentHashMap<Integer,Boolean> classes;
+	/** table of (class id, table of (name, entry) of the class's static and field variables) of every declared class */
+	private final ConcurrentHashMap<Integer,HashMap<String,SymbolTable.Entry>> classVariables;
+	/** 'className.subroutineName' of every subroutine that has been used in conflicting ways */
+	private final ConcurrentSkipListSet<String> conflicts;
+
+	ProgramRegistry() {
+		ids = new ConcurrentHashMap<String,Integer>();
+		names = new ConcurrentHashMap<Integer,String>();
+		nextId = new AtomicInteger(0);
+		subroutines = new ConcurrentHashMap<Long,Subroutine>();
+		classes = new ConcurrentHashMap<Integer,Boolean>();
+		classVariables = new ConcurrentHashMap<Integer,HashMap<String,SymbolTable.Entry>>();
+		conflicts = new ConcurrentSkipListSet<String>();
+	}
+
+	/** the id of a class- or subroutine-name, names that haven't been seen before get the next free id */
+	public int id(String name) {
+		Integer id = ids.get(name);
+		if(id == null) {
+			id = ids.computeIfAbsent(name, newName -> {
+				int newId = nextId.getAndIncrement();
+				names.put(newId, newName);
+				return newId;
+			});
+		}
+		return id;
+	}
+
+	/** records a call (declared = false) or the declaration (declared = true) of className.subroutineName. A declaration replaces
+	 * previous calls, otherwise the first record is kept. Returns what was recorded for the subroutine before, null if it's new.
+	 * If the subroutine was recorded with a conflicting kind or nArgs before, it's added to the conflicts. returnType is only
+	 * known for declarations, pass null for calls */
+	public Subroutine record(String className, String subroutineName, SubroutineKind kind, int nArgs, boolean declared, String returnType) {
+		int classId = id(className);
+		int subroutineId = id(subroutineName);
+		Subroutine recorded = new Subroutine(classId, subroutineId, names.get(classId), names.get(subroutineId), kind, nArgs, declared, returnType);
+		Subroutine[] previous = new Subroutine[1];
+		subroutines.compute(key(classId, subroutineId), (key, existing) -> {
+			previous[0] = existing;
+			return (existing == null || (declared && !existing.isDeclared())) ? recorded : existing;
+		});
+		if(previous[0] != null && previous[0].conflictsWith(kind, nArgs)) {
+			conflicts.add(recorded.getFunctionName());
+		}
+		return previous[0];
+	}
+
+	/** the subroutine className.subroutineName, null if it's never been recorded */
+	public Subroutine get(String className, String subroutineName) {
+		Integer classId = ids.get(className);
+		Integer subroutineId = ids.get(subroutineName);
+		if(classId == null || subroutineId == null) {
+			return null;
+		}
+		return subroutines.get(key(classId, subroutineId));
+	}
+
+	/** the subroutine of a VM-function name, i.e. 'className.subroutineName', null if it's never been recorded */
+	public Subroutine get(String functionName) {
+		int dot = functionName.indexOf('.');
+		if(dot < 0) {
+			return null;
+		}
+		return get(functionName.substring(0, dot), functionName.substring(dot + 1));
+	}
+
+	/** every recorded subroutine, sorted by 'className.subroutineName' */
+	public ArrayList<Subroutine> getSubroutines() {
+		ArrayList<Subroutine> sorted = new ArrayList<Subroutine>(subroutines.values());
+		Collections.sort(sorted, Comparator.comparing(Subroutine::getFunctionName));
+		return sorted;
+	}
+
+	/** the subroutines that have been used in conflicting ways (different kinds or nArgs), sorted */
+	public ArrayList<String> getConflicts() {
+		return new ArrayList<String>(conflicts);
+	}
+
+	/** records the declaration of className */
+	public void declareClass(String className) {
+		classes.put(id(className), true);
+	}
+
+	/** records that className has been used (as a type or in a subroutine call), unless it's been declared already */
+	public void useClass(String className) {
+		classes.putIfAbsent(id(className), false);
+	}
+
+	public boolean isClassDeclared(String className) {
+		Integer classId = ids.get(className);
+		return classId != null && classes.getOrDefault(classId, false);
+	}
+
+	/** records the static and field variables of the declared class className, i.e. the variables of its class-level symbol-table */
+	public void declareClassVariables(String className, SymbolTable classLevelSymbolTable) {
+		HashMap<String,SymbolTable.Entry> variables = new HashMap<String,SymbolTable.Entry>();
+		for(String name : classLevelSymbolTable.getKeySet()) {
+			variables.put(name, classLevelSymbolTable.get(name));
+		}
+		classVariables.put(id(className), variables);
+	}
+
+	/** table of (name, entry) of the static and field variables of className, empty if they haven't been recorded */
+	public HashMap<String,SymbolTable.Entry> getClassVariables(String className) {
+		Integer classId = ids.get(className);
+		HashMap<String,SymbolTable.Entry> variables = (classId == null) ? null : classVariables.get(classId);
+		return (variables == null) ? new HashMap<String,SymbolTable.Entry>() : variables;
+	}
+
+	/** every class that has been declared, sorted */
+	public ArrayList<String> getDeclaredClasses() {
+		ArrayList<String> declared = new ArrayList<String>();
+		for(Integer classId : classes.keySet()) {
+			if(classes.get(classId)) {
+				declared.add(names.get(classId));
+			}
+		}
+		Collections.sort(declared);
+		return declared;
+	}
+
+	/** every class that has been used but not declared (yet), sorted */
+	public ArrayList<String> getUndeclaredClasses() {
+		ArrayList<String> undeclared = new ArrayList<String>();
+		for(Integer classId : classes.keySet()) {
+			if(!classes.get(classId)) {
+				undeclared.add(names.get(classId));
+			}
+		}
+		Collections.sort(undeclared);
+		return undeclared;
+	}
+
+
+	/** 'className.subroutineName' of every subroutine that has been called but never declared, sorted. The OS's subroutines don't
+	 * have to be declared, so they're left out */
+	public ArrayList<String> getMissingSubroutines() {
+		ArrayList<String> missing = new ArrayList<String>();
+		for(Subroutine subroutine : getSubroutines()) {
+			if(!subroutine.isDeclared() && !isOSClass(subroutine.getClassName())) {
+				missing.add(subroutine.getFunctionName());
+			}
+		}
+		return missing;
+	}
+
+	/** every class that has been used but never declared, sorted. The OS's classes don't have to be declared, so they're left out */
+	public ArrayList<String> getMissingClasses() {
+		ArrayList<String> missing = new ArrayList<String>();
+		for(String className : getUndeclaredClasses()) {
+			if(!isOSClass(className)) {
+				missing.add(className);
+			}
+		}
+		return missing;
+	}
+
+	/** is className one of the classes of the OS (Math, String, Array, Output, Screen, Keyboard, Memory, Sys)? */
+	public static boolean isOSClass(String className) {
+		switch(className) {
+		case("Math"): return true;
+		case("String"): return true;
+		case("Array"): return true;
+		case("Output"): return true;
+		case("Screen"): return true;
+		case("Keyboard"): return true;
+		case("Memory"): return true;
+		case("Sys"): return true;
+		default: return false;
+		}
+	}
+
+
+	/** Helper functions **/
+	private long key(int classId, int subroutineId) {
+		return ((long) classId << 32) | (subroutineId & 0xFFFFFFFFL);
+	}
+}
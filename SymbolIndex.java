@@ -0,0 +1,294 @@
+package compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
+
+/** the declarations of a whole program (classes with their static / field variables and subroutines with kind, nArgs and return type)
+ * in a compact .jsym-file, so other tools (or later builds) can look them up without compiling all the classes again.
+ *
+ * Every number is a big-endian int and every record has a fixed size, so the file can be memory-mapped and looked up in place:
+ * - header:				magic "JSYM", version, nClasses, nVariables, nSubroutines, nStrings and the offsets of the four tables below
+ * - class table:			(name, firstVariable, nVariables, firstSubroutine, nSubroutines), sorted by name
+ * - variable table:		(name, type, kind, index), grouped by class, kind is the ordinal of SymbolTable.Kind
+ * - subroutine table:		(name, kind, nArgs, returnType), grouped by class and sorted by name, kind is the ordinal of ProgramRegistry.SubroutineKind
+ * - string table:			nStrings + 1 offsets into the UTF-8 bytes that follow them (string i spans from offset i to offset i + 1)
+ * Names and types are indices into the string table */
+public class SymbolIndex {
+	public static final byte[] MAGIC = {'J', 'S', 'Y', 'M'};
+	/** bumped whenever the layout changes, readers reject any other version */
+	public static final int VERSION = 1;
+	public static final String FILE_EXTENSION = ".jsym";
+
+	private static final int HEADER_SIZE = 4 * 10;
+	private static final int CLASS_RECORD_SIZE = 4 * 5;
+	private static final int VARIABLE_RECORD_SIZE = 4 * 4;
+	private static final int SUBROUTINE_RECORD_SIZE = 4 * 4;
+
+	/** the (possibly memory-mapped) contents of the file */
+	private ByteBuffer buffer;
+	private int nClasses;
+	private int nStrings;
+	private int classTableOffset;
+	private int variableTableOffset;
+	private int subroutineTableOffset;
+	private int stringTableOffset;
+
+	private SymbolIndex(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		for(int index = 0; index < MAGIC.length; index++) {
+			if(buffer.capacity() < HEADER_SIZE || buffer.get(index) != MAGIC[index]) {
+				throw new IOException("Not a " + FILE_EXTENSION + "-file");
+			}
+		}
+		int version = buffer.getInt(4);
+		if(version != VERSION) {
+			throw new IOException("Unsupported " + FILE_EXTENSION + "-version " + version);
+		}
+		nClasses = buffer.getInt(8);
+		nStrings = buffer.getInt(20);
+		classTableOffset = buffer.getInt(24);
+		variableTableOffset = buffer.getInt(28);
+		subroutineTableOffset = buffer.getInt(32);
+		stringTableOffset = buffer.getInt(36);
+	}
+
+	/** memory-maps the .jsym-file */
+	public static SymbolIndex read(String file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			return new SymbolIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/** writes the declarations of every declared class of the registry to file */
+	public static void write(String file, ProgramRegistry registry) throws IOException {
+		LinkedHashMap<String,Integer> stringTable = new LinkedHashMap<String,Integer>();
+		ByteArrayOutputStream classTable = new ByteArrayOutputStream();
+		ByteArrayOutputStream variableTable = new ByteArrayOutputStream();
+		ByteArrayOutputStream subroutineTable = new ByteArrayOutputStream();
+		DataOutputStream classes = new DataOutputStream(classTable);
+		DataOutputStream variables = new DataOutputStream(variableTable);
+		DataOutputStream subroutines = new DataOutputStream(subroutineTable);
+
+		/* the subroutines are sorted by 'className.subroutineName', group them by class */
+		HashMap<String,ArrayList<ProgramRegistry.Subroutine>> subroutinesOfClass = new HashMap<String,ArrayList<ProgramRegistry.Subroutine>>();
+		for(ProgramRegistry.Subroutine subroutine : registry.getSubroutines()) {
+			if(subroutine.isDeclared()) {
+				subroutinesOfClass.computeIfAbsent(subroutine.getClassName(), className -> new ArrayList<ProgramRegistry.Subroutine>()).add(subroutine);
+			}
+		}
+
+		int nVariables = 0;
+		int nSubroutines = 0;
+		/* OS-classes aren't recorded as declared classes, but if they're compiled alongside the program their subroutines are */
+		TreeSet<String> classNameSet = new TreeSet<String>(registry.getDeclaredClasses());
+		classNameSet.addAll(subroutinesOfClass.keySet());
+		ArrayList<String> classNames = new ArrayList<String>(classNameSet);
+		for(String className : classNames) {
+			HashMap<String,SymbolTable.Entry> classVariables = registry.getClassVariables(className);
+			ArrayList<String> variableNames = new ArrayList<String>(classVariables.keySet());
+			Collections.sort(variableNames, Comparator.comparing((String name) -> classVariables.get(name).getKind()).thenComparing(name -> classVariables.get(name).getIndex()));
+			ArrayList<ProgramRegistry.Subroutine> classSubroutines = subroutinesOfClass.getOrDefault(className, new ArrayList<ProgramRegistry.Subroutine>());
+
+			classes.writeInt(stringIndex(stringTable, className));
+			classes.writeInt(nVariables);
+			classes.writeInt(variableNames.size());
+			classes.writeInt(nSubroutines);
+			classes.writeInt(classSubroutines.size());
+
+			for(String name : variableNames) {
+				SymbolTable.Entry variable = classVariables.get(name);
+				variables.writeInt(stringIndex(stringTable, name));
+				variables.writeInt(stringIndex(stringTable, variable.getType()));
+				variables.writeInt(variable.getKind().ordinal());
+				variables.writeInt(variable.getIndex());
+			}
+			for(ProgramRegistry.Subroutine subroutine : classSubroutines) {
+				subroutines.writeInt(stringIndex(stringTable, subroutine.getSubroutineName()));
+				subroutines.writeInt(subroutine.getKind().ordinal());
+				subroutines.writeInt(subroutine.getNArgs());
+				subroutines.writeInt(stringIndex(stringTable, subroutine.getReturnType()));
+			}
+			nVariables += variableNames.size();
+			nSubroutines += classSubroutines.size();
+		}
+
+		ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream stringOffsetTable = new ByteArrayOutputStream();
+		DataOutputStream stringOffsets = new DataOutputStream(stringOffsetTable);
+		for(String string : stringTable.keySet()) {
+			stringOffsets.writeInt(stringBytes.size());
+			stringBytes.write(string.getBytes(StandardCharsets.UTF_8));
+		}
+		stringOffsets.writeInt(stringBytes.size());
+
+		int classTableOffset = HEADER_SIZE;
+		int variableTableOffset = classTableOffset + classTable.size();
+		int subroutineTableOffset = variableTableOffset + variableTable.size();
+		int stringTableOffset = subroutineTableOffset + subroutineTable.size();
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(classNames.size());
+			out.writeInt(nVariables);
+			out.writeInt(nSubroutines);
+			out.writeInt(stringTable.size());
+			out.writeInt(classTableOffset);
+			out.writeInt(variableTableOffset);
+			out.writeInt(subroutineTableOffset);
+			out.writeInt(stringTableOffset);
+			classTable.writeTo(out);
+			variableTable.writeTo(out);
+			subroutineTable.writeTo(out);
+			stringOffsetTable.writeTo(out);
+			stringBytes.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public int getClassCount() {
+		return nClasses;
+	}
+
+	public String getClassName(int classIndex) {
+		return string(classField(classIndex, 0));
+	}
+
+	/** the index of className in the class table (binary search, since it's sorted by name), -1 if it isn't in there */
+	public int findClass(String className) {
+		int low = 0;
+		int high = nClasses - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = getClassName(middle).compareTo(className);
+			if(comparison < 0) {
+				low = middle + 1;
+			} else if(comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	public int getVariableCount(int classIndex) {
+		return classField(classIndex, 2);
+	}
+
+	public String getVariableName(int classIndex, int variableIndex) {
+		return string(variableField(classIndex, variableIndex, 0));
+	}
+
+	public String getVariableType(int classIndex, int variableIndex) {
+		return string(variableField(classIndex, variableIndex, 1));
+	}
+
+	public SymbolTable.Kind getVariableKind(int classIndex, int variableIndex) {
+		return SymbolTable.Kind.values()[variableField(classIndex, variableIndex, 2)];
+	}
+
+	public int getVariableIndex(int classIndex, int variableIndex) {
+		return variableField(classIndex, variableIndex, 3);
+	}
+
+	public int getSubroutineCount(int classIndex) {
+		return classField(classIndex, 4);
+	}
+
+	public String getSubroutineName(int classIndex, int subroutineIndex) {
+		return string(subroutineField(classIndex, subroutineIndex, 0));
+	}
+
+	public ProgramRegistry.SubroutineKind getSubroutineKind(int classIndex, int subroutineIndex) {
+		return ProgramRegistry.SubroutineKind.values()[subroutineField(classIndex, subroutineIndex, 1)];
+	}
+
+	/** nArgs of the subroutine's VM-function, i.e. including 'this' for methods */
+	public int getSubroutineNArgs(int classIndex, int subroutineIndex) {
+		return subroutineField(classIndex, subroutineIndex, 2);
+	}
+
+	/** 'void' or a type */
+	public String getSubroutineReturnType(int classIndex, int subroutineIndex) {
+		return string(subroutineField(classIndex, subroutineIndex, 3));
+	}
+
+	/** prints the contents of a .jsym-file in a readable form */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1) {
+			System.out.println("Usage: SymbolIndex file" + FILE_EXTENSION);
+			return;
+		}
+		SymbolIndex index = read(args[0]);
+		for(int classIndex = 0; classIndex < index.getClassCount(); classIndex++) {
+			System.out.println("class " + index.getClassName(classIndex));
+			for(int variable = 0; variable < index.getVariableCount(classIndex); variable++) {
+				System.out.println("\t" + index.getVariableKind(classIndex, variable) + " " + index.getVariableIndex(classIndex, variable) + "\t"
+									+ index.getVariableType(classIndex, variable) + " " + index.getVariableName(classIndex, variable));
+			}
+			for(int subroutine = 0; subroutine < index.getSubroutineCount(classIndex); subroutine++) {
+				System.out.println("\t" + index.getSubroutineKind(classIndex, subroutine).getKeyword() + " " + index.getSubroutineReturnType(classIndex, subroutine) + " "
+									+ index.getSubroutineName(classIndex, subroutine) + " (nArgs " + index.getSubroutineNArgs(classIndex, subroutine) + ")");
+			}
+		}
+	}
+
+
+	/** Helper functions **/
+	/** the index of string in the string table, adds it if it isn't in there yet */
+	private static int stringIndex(LinkedHashMap<String,Integer> stringTable, String string) {
+		if(string == null) {
+			string = "";
+		}
+		Integer index = stringTable.get(string);
+		if(index == null) {
+			index = stringTable.size();
+			stringTable.put(string, index);
+		}
+		return index;
+	}
+
+	private int classField(int classIndex, int field) {
+		return buffer.getInt(classTableOffset + classIndex * CLASS_RECORD_SIZE + field * 4);
+	}
+
+	private int variableField(int classIndex, int variableIndex, int field) {
+		int variable = classField(classIndex, 1) + variableIndex;
+		return buffer.getInt(variableTableOffset + variable * VARIABLE_RECORD_SIZE + field * 4);
+	}
+
+	private int subroutineField(int classIndex, int subroutineIndex, int field) {
+		int subroutine = classField(classIndex, 3) + subroutineIndex;
+		return buffer.getInt(subroutineTableOffset + subroutine * SUBROUTINE_RECORD_SIZE + field * 4);
+	}
+
+	/** decodes string number 'index' of the string table */
+	private String string(int index) {
+		int bytesOffset = stringTableOffset + (nStrings + 1) * 4;
+		int start = buffer.getInt(stringTableOffset + index * 4);
+		int end = buffer.getInt(stringTableOffset + (index + 1) * 4);
+		byte[] bytes = new byte[end - start];
+		for(int position = 0; position < bytes.length; position++) {
+			bytes[position] = buffer.get(bytesOffset + start + position);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -10,29 +10,75 @@ import java.util.Set;
  */
 
 public class SymbolTable {
-	private HashMap<String,String[]> symbolTable;
-	private static Integer fieldIndex;
-	private static Integer staticIndex;
-	private static Integer localIndex; //i.e. 'var'
-	private static Integer argumentIndex;
-	
-	static {
-		/* initialized to -1 for addToSymbolTable */
-		fieldIndex = -1;
-		staticIndex = -1;
-		localIndex = -1;
-		argumentIndex = -1;
+	/** the kinds of variables, along with the segment the variables of each kind live in */
+	public enum Kind {
+		STATIC(VMWriter.Segment.STATIC), FIELD(VMWriter.Segment.FIELD), VAR(VMWriter.Segment.VAR), ARG(VMWriter.Segment.ARG);
+		
+		private final VMWriter.Segment segment;
+		
+		Kind(VMWriter.Segment segment) {
+			this.segment = segment;
+		}
+		
+		public VMWriter.Segment getSegment() {
+			return segment;
+		}
+	}
+	
+	/** one variable of the symbol-table: its type (interned, since it's mostly one of very few class names), kind and running index */
+	public static class Entry {
+		private final String type;
+		private final Kind kind;
+		private final int index;
+		
+		Entry(String type, Kind kind, int index) {
+			this.type = type.intern();
+			this.kind = kind;
+			this.index = index;
+		}
+		
+		public String getType() {
+			return type;
+		}
+		
+		public Kind getKind() {
+			return kind;
+		}
+		
+		public int getIndex() {
+			return index;
+		}
 	}
 	
+	private HashMap<String,Entry> symbolTable;
+	/** the enclosing scope, i.e. the class-level table for the subroutine-level table, null for the class-level table */
+	private SymbolTable parent;
+	/** the last name resolve found, and its entry */
+	private String lastResolvedName;
+	private Entry lastResolvedEntry;
+	/* the running indices of this table (each table counts its own variables, so the class-level and subroutine-level table don't
+	 * interfere with each other, nor do the tables of different compilations) */
+	private int fieldIndex;
+	private int staticIndex;
+	private int localIndex; //i.e. 'var'
+	private int argumentIndex;
+	
 	SymbolTable(){
-		symbolTable = new HashMap<String,String[]>();
+		this(null);
+	}
+	
+	SymbolTable(SymbolTable parent){
+		symbolTable = new HashMap<String,Entry>();
+		this.parent = parent;
 		fieldIndex = -1;
 		staticIndex = -1;
 		localIndex = -1;
 		argumentIndex = -1;
 	}
 	
-	public String[] get(String key) {
+	/* returns the entry of a given identifier (i.e. its type, kind and index at once), null if the identifier is unknown */
+	public Entry get(String key) {
+		countLookup();
 		return this.symbolTable.get(key);
 	}
 	
@@ -52,127 +98,119 @@ public class SymbolTable {
 		return fieldIndex;
 	}
 	
+	/* returns the entry of a given identifier, looking through this scope first and then the enclosing ones, null if it's not declared
+	 * in any of them. The entry holds everything needed to push / pop the variable (kind i.e. segment, and index). Since the compiler
+	 * tends to resolve the same identifier a couple of times in a row, the last resolved entry is cached. Only in this table though, 
+	 * the enclosing ones are only read, so several subroutine-level tables can share one class-level table across threads (cf. AstCompiler) */
+	public Entry resolve(String name) {
+		countLookup();
+		if(name.equals(lastResolvedName)) {
+			return lastResolvedEntry;
+		}
+		Entry entry = null;
+		for(SymbolTable scope = this; scope != null && entry == null; scope = scope.parent) {
+			entry = scope.symbolTable.get(name);
+		}
+		if(entry != null) {
+			lastResolvedName = name;
+			lastResolvedEntry = entry;
+		}
+		return entry;
+	}
+	
 	/* start of a new subroutine/class scope, resets the subroutines symboltable */
 	public void startSubroutine() {
 		this.symbolTable.clear();
+		lastResolvedName = null;
+		lastResolvedEntry = null;
 		localIndex = -1;
 		argumentIndex = -1;
 	}
 	
 	/* gets identifier's name, type and kind, assigns it to one of the running indicies and adds the quple to the symbol-table */
-	public void define(String name, String type, String kind) {
+	public void define(String name, String type, Kind kind) {
 		if(!nameExists(name)) {
-			switch(kind) {
-			case("STATIC"):
-				addToSymbolTable(name,type,"STATIC");
-				break;
-			case("FIELD"):
-				addToSymbolTable(name,type,"FIELD");
-				break;
-			case("VAR"):
-				addToSymbolTable(name,type,"VAR");
-				break;
-			case("ARG"):
-				addToSymbolTable(name,type,"ARG");
-				break;
-			default: 
-				System.out.println("Invalid variable kind in SymbolTable.define");
-			}
+			addToSymbolTable(name,type,kind);
 		}
 	}	
 	
 	/* returns the running index of certain kind of identifier */
-	public int varCount(String kind) {
+	public int varCount(Kind kind) {
 		switch(kind) {
-		case("STATIC"):
+		case STATIC:
 			return staticIndex;
-		case("FIELD"):
+		case FIELD:
 			return fieldIndex;
-		case("VAR"):
+		case VAR:
 			return localIndex;
-		case("ARG"):
+		default:
 			return argumentIndex;
-		default: 
-			System.out.println("Invalid amount of " + kind + " variables");
-			return -1;
 		}
 	}
 	
 	/* returns type of a given identifier */
 	public String typeOf(String name) {
-		String type = this.symbolTable.get(name)[0];
-		return type;
+		countLookup();
+		return this.symbolTable.get(name).getType();
 	}	
 	
-	/* returns the kind of a given identifier, if the identifier is unknown, returns "NONE" */
-	public String kindOf(String name) {
-		String kind = this.symbolTable.get(name)[1];
-		if(!isValidKind(kind)) {
-			return "NONE";
+	/* returns the kind of a given identifier, if the identifier is unknown, returns null */
+	public Kind kindOf(String name) {
+		countLookup();
+		Entry entry = this.symbolTable.get(name);
+		if(entry == null) {
+			return null;
 		}
 		else {
-			return kind;
+			return entry.getKind();
 		}
 	}
 	
 	/* returns index of given identifier */
 	public int indexOf(String name) {
-		int index = Integer.parseInt(this.symbolTable.get(name)[2]);
-		return index;
+		countLookup();
+		return this.symbolTable.get(name).getIndex();
 	}
 	
 	
 	/** Helper functions **/
+	private static void countLookup() {
+		if(JackCompiler.statistics != null) {
+			JackCompiler.statistics.countSymbolLookup();
+		}
+	}
+	
 	/** adds (name,type,kind,index) quple to symbolTable **/
-	private void addToSymbolTable(String name, String type, String kind) {
-		Integer index = 0;
+	private void addToSymbolTable(String name, String type, Kind kind) {
+		int index = 0;
 		switch(kind) {
-			case("VAR"): 
+			case VAR: 
 				localIndex++;
 				index = localIndex;
 				break;
-			case("ARG"): 
+			case ARG: 
 				argumentIndex++; 
 				index = argumentIndex;
 				break;
-			case("STATIC"): 
+			case STATIC: 
 				staticIndex++; 
 				index = staticIndex;
 				break;
-			case("FIELD"): 
+			case FIELD: 
 				fieldIndex++;
 				index = fieldIndex;
 				break;
-			default: System.out.println("Invalid index (due to invalid kind) in addToSymbolTable"); return;
 		}
 		
-		String[] TypeKindIndexTriplet = new String[3];
-		TypeKindIndexTriplet[0] = type;
-		TypeKindIndexTriplet[1] = kind;
-		TypeKindIndexTriplet[2] = index.toString();
-		this.symbolTable.put(name,TypeKindIndexTriplet);	
-		
-
-	}
-	
-	/** checks if current kind is valid **/
-	private boolean isValidKind(String kind) {
-		switch(kind) {
-		case("STATIC"):
-			return true;
-		case("FIELD"):
-			return true;
-		case("VAR"):
-			return true;
-		case("ARG"):
-			return true;
-		default: 
-			return false;
-		}
+		this.symbolTable.put(name, new Entry(type, kind, index));
+		/* the new entry might shadow the cached one */
+		lastResolvedName = null;
+		lastResolvedEntry = null;
 	}
 	
 	/** checks if a given name exists **/
 	public boolean nameExists(String name) {
+		countLookup();
 		if(this.symbolTable.get(name) != null) {
 			return true;
 		}
@@ -0,0 +1,125 @@
+package compiler;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** reads VM-commands back in from the binary .vmb format written by VMBinaryWriter */
+public class VMBinaryReader {
+	
+	/** reads all commands of one .vmb-file from in (doesn't close in) */
+	public static ArrayList<VMCommand> read(InputStream in) throws IOException {
+		byte[] magic = new byte[VMBinaryWriter.MAGIC.length];
+		readFully(in, magic);
+		if(!Arrays.equals(magic, VMBinaryWriter.MAGIC)) {
+			throw new IOException("Not a .vmb-file");
+		}
+		int version = readByte(in);
+		if(version != VMBinaryWriter.VERSION) {
+			throw new IOException("Unsupported .vmb-version " + version);
+		}
+		
+		int nStrings = readVarint(in);
+		String[] strings = new String[nStrings];
+		for(int index = 0; index < nStrings; index++) {
+			byte[] bytes = new byte[readVarint(in)];
+			readFully(in, bytes);
+			strings[index] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		
+		int nCommands = readVarint(in);
+		ArrayList<VMCommand> commands = new ArrayList<VMCommand>(nCommands);
+		for(int index = 0; index < nCommands; index++) {
+			int opcode = readByte(in);
+			if(opcode < VMBinaryWriter.POP) {
+				commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMBinaryWriter.SEGMENTS[opcode - VMBinaryWriter.PUSH], readVarint(in)));
+			}
+			else if(opcode < VMBinaryWriter.ARITHMETIC_BASE) {
+				commands.add(new VMCommand(VMCommand.Opcode.POP, VMBinaryWriter.SEGMENTS[opcode - VMBinaryWriter.POP], readVarint(in)));
+			}
+			else if(opcode < VMBinaryWriter.ARITHMETIC_BASE + VMBinaryWriter.ARITHMETIC.length) {
+				commands.add(new VMCommand(VMBinaryWriter.ARITHMETIC[opcode - VMBinaryWriter.ARITHMETIC_BASE]));
+			}
+			else {
+				switch(opcode) {
+				case(VMBinaryWriter.LABEL):
+					commands.add(new VMCommand(VMCommand.Opcode.LABEL, strings[readVarint(in)], 0));
+					break;
+				case(VMBinaryWriter.GOTO):
+					commands.add(new VMCommand(VMCommand.Opcode.GOTO, strings[readVarint(in)], 0));
+					break;
+				case(VMBinaryWriter.IF_GOTO):
+					commands.add(new VMCommand(VMCommand.Opcode.IF_GOTO, strings[readVarint(in)], 0));
+					break;
+				case(VMBinaryWriter.CALL):
+					commands.add(new VMCommand(VMCommand.Opcode.CALL, strings[readVarint(in)], readVarint(in)));
+					break;
+				case(VMBinaryWriter.FUNCTION):
+					commands.add(new VMCommand(VMCommand.Opcode.FUNCTION, strings[readVarint(in)], readVarint(in)));
+					break;
+				case(VMBinaryWriter.RETURN):
+					commands.add(new VMCommand(VMCommand.Opcode.RETURN));
+					break;
+				default:
+					throw new IOException("Invalid opcode " + opcode);
+				}
+			}
+		}
+		return commands;
+	}
+	
+	/** reads one .vmb-file */
+	public static ArrayList<VMCommand> read(String inputFile) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(inputFile));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static int readByte(InputStream in) throws IOException {
+		int b = in.read();
+		if(b == -1) {
+			throw new EOFException("Unexpected end of .vmb-file");
+		}
+		return b;
+	}
+	
+	private static void readFully(InputStream in, byte[] bytes) throws IOException {
+		int offset = 0;
+		while(offset < bytes.length) {
+			int n = in.read(bytes, offset, bytes.length - offset);
+			if(n == -1) {
+				throw new EOFException("Unexpected end of .vmb-file");
+			}
+			offset += n;
+		}
+	}
+	
+	/** reads an unsigned LEB128 varint */
+	private static int readVarint(InputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		while(true) {
+			int b = readByte(in);
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+	
+	/** decodes the given .vmb-file and prints it as plain .vm text */
+	public static void main(String[] args) throws IOException {
+		for(VMCommand command : read(args[0])) {
+			System.out.println(command.toString());
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/* Binary .vmb format (all numbers are unsigned LEB128 varints, i.e. 7 bits per byte, highest bit set if more bytes follow):
+ * 
+ * 'J' 'V' 'M' 'B' version			header, version is a single byte
+ * nStrings (length utf8Bytes)*		string-table of all the labels and function names used in the file
+ * nCommands command*				the commands, each one is a one-byte opcode followed by its operands:
+ * 
+ * PUSH + segment index				segment is the position of the segment in SEGMENTS, i.e. push local 2 = (PUSH + 1) 2
+ * POP + segment index
+ * ADD ... NOT						arithmetic commands, no operands
+ * LABEL / GOTO / IF_GOTO string	string is the label's index into the string-table
+ * CALL string nArgs
+ * FUNCTION string nLocals
+ * RETURN
+ */
+
+/** writes VM-commands in the compact binary .vmb format, cf. VMBinaryReader for reading them back in */
+public class VMBinaryWriter {
+	public static final String FILE_EXTENSION = ".vmb";
+	public static final byte[] MAGIC = {'J', 'V', 'M', 'B'};
+	public static final int VERSION = 1;
+	
+	/** the segments in the order of their opcode-offset */
+	public static final VMWriter.Segment[] SEGMENTS = {VMWriter.Segment.ARG, VMWriter.Segment.VAR, VMWriter.Segment.STATIC, VMWriter.Segment.CONST,
+			VMWriter.Segment.FIELD, VMWriter.Segment.THAT, VMWriter.Segment.POINTER, VMWriter.Segment.TEMP};
+	/** the arithmetic commands in the order of their opcode-offset */
+	public static final VMCommand.Opcode[] ARITHMETIC = {VMCommand.Opcode.ADD, VMCommand.Opcode.SUB, VMCommand.Opcode.NEG, VMCommand.Opcode.EQ,
+			VMCommand.Opcode.GT, VMCommand.Opcode.LT, VMCommand.Opcode.AND, VMCommand.Opcode.OR, VMCommand.Opcode.NOT};
+	
+	/* opcodes */
+	public static final int PUSH = 0x00; // 0x00 - 0x07
+	public static final int POP = 0x08; // 0x08 - 0x0F
+	public static final int ARITHMETIC_BASE = 0x10; // 0x10 - 0x18
+	public static final int LABEL = 0x20;
+	public static final int GOTO = 0x21;
+	public static final int IF_GOTO = 0x22;
+	public static final int CALL = 0x23;
+	public static final int FUNCTION = 0x24;
+	public static final int RETURN = 0x25;
+	
+	/** writes the given commands to out (doesn't close out) */
+	public static void write(List<VMCommand> commands, OutputStream out) throws IOException {
+		/* first collect the string-table, every label / function name is only stored once */
+		HashMap<String,Integer> stringIndex = new HashMap<String,Integer>();
+		ArrayList<String> strings = new ArrayList<String>();
+		for(VMCommand command : commands) {
+			String argument = command.getArgument();
+			if(argument != null && !stringIndex.containsKey(argument)) {
+				stringIndex.put(argument, strings.size());
+				strings.add(argument);
+			}
+		}
+		
+		out.write(MAGIC);
+		out.write(VERSION);
+		writeVarint(out, strings.size());
+		for(String string : strings) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			writeVarint(out, bytes.length);
+			out.write(bytes);
+		}
+		
+		writeVarint(out, commands.size());
+		for(VMCommand command : commands) {
+			switch(command.getOpcode()) {
+			case PUSH:
+				out.write(PUSH + segmentIndex(command.getSegment()));
+				writeVarint(out, command.getIndex());
+				break;
+			case POP:
+				out.write(POP + segmentIndex(command.getSegment()));
+				writeVarint(out, command.getIndex());
+				break;
+			case LABEL:
+				out.write(LABEL);
+				writeVarint(out, stringIndex.get(command.getArgument()));
+				break;
+			case GOTO:
+				out.write(GOTO);
+				writeVarint(out, stringIndex.get(command.getArgument()));
+				break;
+			case IF_GOTO:
+				out.write(IF_GOTO);
+				writeVarint(out, stringIndex.get(command.getArgument()));
+				break;
+			case CALL:
+				out.write(CALL);
+				writeVarint(out, stringIndex.get(command.getArgument()));
+				writeVarint(out, command.getIndex());
+				break;
+			case FUNCTION:
+				out.write(FUNCTION);
+				writeVarint(out, stringIndex.get(command.getArgument()));
+				writeVarint(out, command.getIndex());
+				break;
+			case RETURN:
+				out.write(RETURN);
+				break;
+			default:
+				out.write(ARITHMETIC_BASE + arithmeticIndex(command.getOpcode()));
+			}
+		}
+	}
+	
+	/** writes value as an unsigned LEB128 varint */
+	private static void writeVarint(OutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+	
+	private static int segmentIndex(VMWriter.Segment segment) throws IOException {
+		for(int index = 0; index < SEGMENTS.length; index++) {
+			if(SEGMENTS[index] == segment) {
+				return index;
+			}
+		}
+		throw new IOException("Invalid segment '" + segment.getName() + "'");
+	}
+	
+	private static int arithmeticIndex(VMCommand.Opcode opcode) throws IOException {
+		for(int index = 0; index < ARITHMETIC.length; index++) {
+			if(ARITHMETIC[index] == opcode) {
+				return index;
+			}
+		}
+		throw new IOException("Invalid VM-command '" + opcode.getName() + "'");
+	}
+}
@@ -0,0 +1,86 @@
+package compiler;
+
+/** one VM-command, i.e. 'opcode argument index' like 'push local 0', 'call Math.multiply 2', 'label someLabel' or just 'add'.
+ * segment is only set for push/pop, argument only for label/goto/if-goto (the label) and call/function (the function name),
+ * index is either the segment index (push/pop), nArgs (call) or nLocals (function) and 0 otherwise. The opcode and the segment
+ * are only turned into their names in the textual .vm format, i.e. by toString */
+public class VMCommand {
+	/** the VM-commands, along with their name in VM-code */
+	public enum Opcode {
+		PUSH("push"), POP("pop"), ADD("add"), SUB("sub"), NEG("neg"), EQ("eq"), GT("gt"), LT("lt"), AND("and"), OR("or"), NOT("not"),
+		LABEL("label"), GOTO("goto"), IF_GOTO("if-goto"), CALL("call"), FUNCTION("function"), RETURN("return");
+
+		private final String name;
+
+		Opcode(String name) {
+			this.name = name;
+		}
+
+		/** the command's name in VM-code */
+		public String getName() {
+			return name;
+		}
+	}
+
+	private final Opcode opcode;
+	private final VMWriter.Segment segment;
+	private final String argument;
+	private final int index;
+
+	/** push/pop */
+	VMCommand(Opcode opcode, VMWriter.Segment segment, int index) {
+		this.opcode = opcode;
+		this.segment = segment;
+		this.argument = null;
+		this.index = index;
+	}
+
+	/** label/goto/if-goto/call/function */
+	VMCommand(Opcode opcode, String argument, int index) {
+		this.opcode = opcode;
+		this.segment = null;
+		this.argument = argument;
+		this.index = index;
+	}
+
+	/** the arithmetic commands and return */
+	VMCommand(Opcode opcode) {
+		this(opcode, (String) null, 0);
+	}
+
+	/** the command's opcode, null for the blocks VMWriter stands in for commands with until they're flattened */
+	public Opcode getOpcode() {
+		return opcode;
+	}
+
+	public VMWriter.Segment getSegment() {
+		return segment;
+	}
+
+	public String getArgument() {
+		return argument;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	/** returns the command in the textual .vm format (without the newline) */
+	@Override
+	public String toString() {
+		switch(opcode) {
+		case PUSH:
+		case POP:
+			return opcode.getName() + " " + segment.getName() + " " + index;
+		case CALL:
+		case FUNCTION:
+			return opcode.getName() + " " + argument + " " + index;
+		case LABEL:
+		case GOTO:
+		case IF_GOTO:
+			return opcode.getName() + " " + argument;
+		default:
+			return opcode.getName();
+		}
+	}
+}
@@ -0,0 +1,488 @@
+package compiler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/** all the VM-code of one run of JackCompiler.translate, i.e. the VMWriters of every compiled .jack-file. The output-files are only
+ * written once every file has been compiled, so whole-program optimizations can work on the complete program before that */
+public class VMProgram {
+	/** the Hack computer's ROM holds 32K instructions */
+	private static final int MAX_ROM_SIZE = 32768;
+	/** the VMWriters of the compiled files, in the order they were compiled in */
+	private ArrayList<VMWriter> vmWriters;
+	/** running index of inlined call sites, makes the labels of every inlined body unique */
+	private int inlineSiteIndex;
+	
+	VMProgram() {
+		vmWriters = new ArrayList<VMWriter>();
+		inlineSiteIndex = 0;
+	}
+	
+	public void add(VMWriter vmWriter) {
+		vmWriters.add(vmWriter);
+	}
+	
+	/** writes the output-files of every compiled .jack-file */
+	public void write() throws IOException {
+		for(VMWriter vmWriter : vmWriters) {
+			long start = System.nanoTime();
+			vmWriter.writeOutputFile();
+			if(JackCompiler.statistics != null) {
+				JackCompiler.statistics.addWritingNanos(vmWriter.getClassName(), System.nanoTime() - start);
+			}
+		}
+	}
+	
+	public ArrayList<VMWriter> getVMWriters() {
+		return vmWriters;
+	}
+	
+	/** translates the whole program to Hack assembly (including the bootstrap code that calls Sys.init) and writes it to outputFile,
+	 * without writing any .vm-files. Warns about calls to functions that aren't part of the program, since the Hack assembler would
+	 * silently turn those into variables. If optimizeForSize is set, call / return / comparisons jump into shared routines instead of
+	 * being translated inline (cf. HackAssemblyWriter). If reportROMUsage is set, the ROM words used by every function are printed */
+	public void writeAssembly(String outputFile, boolean optimizeForSize, boolean reportROMUsage) throws IOException {
+		HashMap<String,ArrayList<VMCommand>> functionTable = getFunctionTable();
+		StringBuilder missingFunctions = new StringBuilder();
+		HashSet<String> missing = new HashSet<String>();
+		if(!functionTable.containsKey("Sys.init")) {
+			missing.add("Sys.init");
+			missingFunctions.append("[Sys.init]");
+		}
+		for(ArrayList<VMCommand> function : functionTable.values()) {
+			for(VMCommand command : function) {
+				if(command.getOpcode() == VMCommand.Opcode.CALL && !functionTable.containsKey(command.getArgument()) && missing.add(command.getArgument())) {
+					missingFunctions.append("[" + command.getArgument() + "]");
+				}
+			}
+		}
+		if(!missing.isEmpty()) {
+			System.out.println("Warning: the assembly calls functions that aren't part of the program (is the OS missing?) " + missingFunctions.toString());
+		}
+		
+		HackAssemblyWriter hackAssemblyWriter = new HackAssemblyWriter(optimizeForSize);
+		hackAssemblyWriter.writeBootstrap();
+		for(VMWriter vmWriter : vmWriters) {
+			hackAssemblyWriter.writeCommands(vmWriter.getClassName(), vmWriter.getCommands());
+		}
+		hackAssemblyWriter.writeSharedRoutines();
+		hackAssemblyWriter.writeFile(outputFile);
+		
+		int romSize = hackAssemblyWriter.getROMSize();
+		if(reportROMUsage) {
+			System.out.println("ROM words used per function:");
+			for(String functionName : hackAssemblyWriter.getFunctionNames()) {
+				System.out.println("\t" + hackAssemblyWriter.getROMUsage().get(functionName) + "\t" + functionName);
+			}
+			System.out.println("\t" + romSize + "\tTotal (of " + MAX_ROM_SIZE + ")");
+		}
+		if(romSize > MAX_ROM_SIZE) {
+			System.out.println("Warning: the assembly needs " + romSize + " ROM words, but the Hack ROM only holds " + MAX_ROM_SIZE 
+					+ (optimizeForSize ? "" : " (try optimizing for size)"));
+		}
+	}
+	
+	/** removes every function that can't be reached from the program's entry point. The entry point is Sys.init if the OS is part
+	 * of the program. Otherwise it's Main.main (which is what the OS's Sys.init calls), and since the prebuilt OS that is linked in
+	 * later calls back into OS classes compiled with the program (e.g. Sys.init calls Memory.init and Math.init, Output.printString
+	 * calls String.length and String.charAt), every function of such a compiled OS class is an entry point as well. Starting from
+	 * there, every function that is called by a reachable function is reachable too */
+	public void eliminateDeadSubroutines() {
+		HashMap<String,ArrayList<VMCommand>> functionTable = getFunctionTable();
+		HashSet<String> reachable = new HashSet<String>();
+		ArrayDeque<String> worklist = new ArrayDeque<String>();
+		if(functionTable.containsKey("Sys.init")) {
+			reachable.add("Sys.init");
+		} else {
+			if(functionTable.containsKey("Main.main")) {
+				reachable.add("Main.main");
+			}
+			for(String functionName : functionTable.keySet()) {
+				if(ProgramRegistry.isOSClass(className(functionName))) {
+					reachable.add(functionName);
+				}
+			}
+		}
+		if(reachable.isEmpty()) {
+			System.out.println("Dead subroutine elimination skipped: the program has neither a 'Sys.init' nor a 'Main.main'");
+			return;
+		}
+		
+		/* walk the call-graph, starting from the entry points */
+		worklist.addAll(reachable);
+		while(!worklist.isEmpty()) {
+			for(VMCommand command : functionTable.get(worklist.poll())) {
+				String callee = command.getArgument();
+				if(command.getOpcode() == VMCommand.Opcode.CALL && functionTable.containsKey(callee) && reachable.add(callee)) {
+					worklist.add(callee);
+				}
+			}
+		}
+		
+		/* remove the unreachable functions */
+		int nRemovedCommands = 0;
+		StringBuilder removedFunctions = new StringBuilder();
+		for(VMWriter vmWriter : vmWriters) {
+			ArrayList<VMCommand> commands = vmWriter.getCommands();
+			ArrayList<VMCommand> keptCommands = new ArrayList<VMCommand>(commands.size());
+			boolean keep = true;
+			for(VMCommand command : commands) {
+				if(command.getOpcode() == VMCommand.Opcode.FUNCTION) {
+					keep = reachable.contains(command.getArgument());
+					if(!keep) {
+						removedFunctions.append("[");
+						removedFunctions.append(command.getArgument());
+						removedFunctions.append("]");
+					}
+				}
+				if(keep) {
+					keptCommands.add(command);
+				} else {
+					nRemovedCommands++;
+				}
+			}
+			commands.clear();
+			commands.addAll(keptCommands);
+		}
+		
+		System.out.println("Dead subroutine elimination: removed " + (functionTable.size() - reachable.size()) + " of " + functionTable.size() 
+							+ " subroutines (" + nRemovedCommands + " VM-commands) " + removedFunctions.toString());
+	}
+	
+	/** replaces calls of small leaf subroutines (i.e. subroutines that don't call anything themselves) by the subroutine's body, which
+	 * saves the whole call/return frame setup at each of those call sites. A subroutine is only inlined if
+	 * - its body has at most 'threshold' VM-commands and ends in 'return'
+	 * - it's declared on the registry with the same nArgs the call site uses
+	 * - it doesn't use the 'static' segment, unless it's inlined into the class it's declared in (statics are per file)
+	 * The inlined body gets its own local slots in the caller (appended after the caller's locals, so the caller's nLocals grows):
+	 * the call site's arguments are popped into them, the subroutine's 'argument' / 'local' segments are renamed accordingly and its
+	 * labels are renamed so they're unique within the caller. If the subroutine sets pointer 0 (i.e. it's a method), the caller's
+	 * pointer 0 is saved before and restored after the inlined body. Since inlining can turn callers into leaf subroutines themselves,
+	 * this is repeated until nothing changes anymore. Prints the amount of inlined call sites and the net change in VM-commands */
+	public void inlineSmallSubroutines(int threshold, ProgramRegistry registry) {
+		int nCommandsBefore = countCommands();
+		int nInlinedCallSites = 0;
+		HashSet<String> inlinedSubroutines = new HashSet<String>();
+		
+		while(true) {
+			HashMap<String,ArrayList<VMCommand>> functionTable = getFunctionTable();
+			HashSet<String> inlinable = new HashSet<String>();
+			for(String functionName : functionTable.keySet()) {
+				ArrayList<VMCommand> function = functionTable.get(functionName);
+				ProgramRegistry.Subroutine subroutine = registry.get(functionName);
+				if(subroutine != null && subroutine.isDeclared() && isInlinable(function, threshold)) {
+					inlinable.add(functionName);
+				}
+			}
+			
+			int nInlinedInThisPass = 0;
+			for(VMWriter vmWriter : vmWriters) {
+				ArrayList<VMCommand> commands = vmWriter.getCommands();
+				ArrayList<VMCommand> newCommands = new ArrayList<VMCommand>(commands.size());
+				/* index of the current caller's 'function' command within newCommands, its nLocals and the amount of extra locals it needs */
+				int functionIndex = -1;
+				int nLocals = 0;
+				int nExtraLocals = 0;
+				String callerName = "";
+				
+				for(VMCommand command : commands) {
+					if(command.getOpcode() == VMCommand.Opcode.FUNCTION) {
+						patchNLocals(newCommands, functionIndex, nLocals + nExtraLocals);
+						functionIndex = newCommands.size();
+						nLocals = command.getIndex();
+						nExtraLocals = 0;
+						callerName = command.getArgument();
+						newCommands.add(command);
+					}
+					else if(command.getOpcode() == VMCommand.Opcode.CALL && inlinable.contains(command.getArgument()) && !command.getArgument().equals(callerName)
+							&& command.getIndex() == registry.get(command.getArgument()).getNArgs()
+							&& (className(command.getArgument()).equals(className(callerName)) || !usesSegment(functionTable.get(command.getArgument()), VMWriter.Segment.STATIC))) {
+						ArrayList<VMCommand> callee = functionTable.get(command.getArgument());
+						nExtraLocals = Math.max(nExtraLocals, writeInlinedBody(newCommands, callee, command.getIndex(), nLocals, inlineSiteIndex));
+						inlineSiteIndex++;
+						nInlinedInThisPass++;
+						inlinedSubroutines.add(command.getArgument());
+					}
+					else {
+						newCommands.add(command);
+					}
+				}
+				patchNLocals(newCommands, functionIndex, nLocals + nExtraLocals);
+				
+				commands.clear();
+				commands.addAll(newCommands);
+			}
+			
+			nInlinedCallSites += nInlinedInThisPass;
+			if(nInlinedInThisPass == 0) {
+				break;
+			}
+		}
+		
+		int nCommandsAfter = countCommands();
+		System.out.println("Inlining: inlined " + nInlinedCallSites + " call sites of " + inlinedSubroutines.size() + " subroutines, VM-commands: " 
+							+ nCommandsBefore + " -> " + nCommandsAfter + " (" + (nCommandsAfter - nCommandsBefore >= 0 ? "+" : "") + (nCommandsAfter - nCommandsBefore) + ")");
+	}
+	
+	/** packs locals whose lifetimes never overlap into shared 'local' slots, which lowers the nLocals of the functions (and with that
+	 * the zeros every call has to push). A local is live wherever its current value may still be read, i.e. from a 'pop local i'
+	 * (or the function's entry, where it's 0) up to its last 'push local i' that can be reached without another 'pop local i' in between.
+	 * Two locals can share a slot unless one of them is written while the other one is live. Locals that are never used don't get a slot
+	 * at all. Runs after inlining, so the locals inlined bodies add to their callers are packed too. Prints the total amount of local slots */
+	public void packLocalSlots() {
+		int nSlotsBefore = 0;
+		int nSlotsAfter = 0;
+		for(VMWriter vmWriter : vmWriters) {
+			ArrayList<VMCommand> commands = vmWriter.getCommands();
+			int functionIndex = -1;
+			for(int index = 0; index <= commands.size(); index++) {
+				if(index == commands.size() || commands.get(index).getOpcode() == VMCommand.Opcode.FUNCTION) {
+					if(functionIndex >= 0) {
+						nSlotsBefore += commands.get(functionIndex).getIndex();
+						nSlotsAfter += packLocalSlots(commands, functionIndex, index);
+					}
+					functionIndex = index;
+				}
+			}
+		}
+		System.out.println("Local slot packing: local slots: " + nSlotsBefore + " -> " + nSlotsAfter);
+	}
+	
+	/** packs the locals of the function at commands[functionIndex, end) into as few slots as possible, returns its new nLocals */
+	private int packLocalSlots(ArrayList<VMCommand> commands, int functionIndex, int end) {
+		int nLocals = commands.get(functionIndex).getIndex();
+		int first = functionIndex + 1;
+		int size = end - first;
+		HashMap<String,Integer> labelTable = new HashMap<String,Integer>();
+		for(int index = 0; index < size; index++) {
+			if(commands.get(first + index).getOpcode() == VMCommand.Opcode.LABEL) {
+				labelTable.put(commands.get(first + index).getArgument(), index);
+			}
+		}
+		
+		/* liveIn[index] = the locals that are live right before commands[first + index], computed backwards until nothing changes */
+		BitSet[] liveIn = new BitSet[size];
+		for(int index = 0; index < size; index++) {
+			liveIn[index] = new BitSet(nLocals);
+		}
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(int index = size - 1; index >= 0; index--) {
+				VMCommand command = commands.get(first + index);
+				BitSet live = liveOut(commands, first, index, liveIn, labelTable);
+				if(isLocalAccess(command, VMCommand.Opcode.POP)) {
+					live.clear(command.getIndex());
+				} else if(isLocalAccess(command, VMCommand.Opcode.PUSH)) {
+					live.set(command.getIndex());
+				}
+				if(!live.equals(liveIn[index])) {
+					liveIn[index] = live;
+					changed = true;
+				}
+			}
+		}
+		
+		/* interference[i] = the locals local i can't share a slot with */
+		BitSet used = new BitSet(nLocals);
+		BitSet[] interference = new BitSet[nLocals];
+		for(int local = 0; local < nLocals; local++) {
+			interference[local] = new BitSet(nLocals);
+		}
+		for(int index = 0; index < size; index++) {
+			VMCommand command = commands.get(first + index);
+			if(isLocalAccess(command, VMCommand.Opcode.PUSH) || isLocalAccess(command, VMCommand.Opcode.POP)) {
+				used.set(command.getIndex());
+			}
+			if(isLocalAccess(command, VMCommand.Opcode.POP)) {
+				BitSet liveOut = liveOut(commands, first, index, liveIn, labelTable);
+				for(int local = liveOut.nextSetBit(0); local >= 0; local = liveOut.nextSetBit(local + 1)) {
+					if(local != command.getIndex()) {
+						interference[local].set(command.getIndex());
+						interference[command.getIndex()].set(local);
+					}
+				}
+			}
+		}
+		
+		/* give every used local the lowest slot none of the locals it interferes with has gotten yet */
+		int[] slot = new int[nLocals];
+		int nSlots = 0;
+		for(int local = used.nextSetBit(0); local >= 0; local = used.nextSetBit(local + 1)) {
+			BitSet takenSlots = new BitSet(nLocals);
+			for(int other = interference[local].nextSetBit(0); other >= 0 && other < local; other = interference[local].nextSetBit(other + 1)) {
+				if(used.get(other)) {
+					takenSlots.set(slot[other]);
+				}
+			}
+			slot[local] = takenSlots.nextClearBit(0);
+			nSlots = Math.max(nSlots, slot[local] + 1);
+		}
+		
+		for(int index = first; index < end; index++) {
+			VMCommand command = commands.get(index);
+			if((isLocalAccess(command, VMCommand.Opcode.PUSH) || isLocalAccess(command, VMCommand.Opcode.POP)) && slot[command.getIndex()] != command.getIndex()) {
+				commands.set(index, new VMCommand(command.getOpcode(), VMWriter.Segment.VAR, slot[command.getIndex()]));
+			}
+		}
+		patchNLocals(commands, functionIndex, nSlots);
+		return nSlots;
+	}
+	
+	/** the locals that are live right after commands[first + index], i.e. the union of liveIn of all the commands that can follow it */
+	private BitSet liveOut(ArrayList<VMCommand> commands, int first, int index, BitSet[] liveIn, HashMap<String,Integer> labelTable) {
+		VMCommand command = commands.get(first + index);
+		BitSet liveOut = new BitSet();
+		if(command.getOpcode() == VMCommand.Opcode.GOTO || command.getOpcode() == VMCommand.Opcode.IF_GOTO) {
+			Integer target = labelTable.get(command.getArgument());
+			if(target != null) {
+				liveOut.or(liveIn[target]);
+			}
+		}
+		if(command.getOpcode() != VMCommand.Opcode.GOTO && command.getOpcode() != VMCommand.Opcode.RETURN && index + 1 < liveIn.length) {
+			liveOut.or(liveIn[index + 1]);
+		}
+		return liveOut;
+	}
+	
+	private boolean isLocalAccess(VMCommand command, VMCommand.Opcode pushOrPop) {
+		return command.getOpcode() == pushOrPop && command.getSegment() == VMWriter.Segment.VAR;
+	}
+	
+	/** is the given function (starting with its 'function' command) a leaf function with at most 'threshold' commands that ends in 'return'? */
+	private boolean isInlinable(ArrayList<VMCommand> function, int threshold) {
+		int size = function.size() - 1;
+		if(size < 1 || size > threshold || function.get(function.size() - 1).getOpcode() != VMCommand.Opcode.RETURN) {
+			return false;
+		}
+		for(VMCommand command : function) {
+			if(command.getOpcode() == VMCommand.Opcode.CALL) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** does the given function push or pop the given segment anywhere? */
+	private boolean usesSegment(ArrayList<VMCommand> function, VMWriter.Segment segment) {
+		for(VMCommand command : function) {
+			if((command.getOpcode() == VMCommand.Opcode.PUSH || command.getOpcode() == VMCommand.Opcode.POP) && command.getSegment() == segment) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** writes the body of callee to commands, in place of a 'call callee nArgs' inside a caller that has 'nLocals' locals. 
+	 * Returns the amount of extra locals the caller needs for it */
+	private int writeInlinedBody(ArrayList<VMCommand> commands, ArrayList<VMCommand> callee, int nArgs, int nLocals, int siteIndex) {
+		int calleeNLocals = callee.get(0).getIndex();
+		int argumentBase = nLocals;
+		int localBase = nLocals + nArgs;
+		int savedPointer = nLocals + nArgs + calleeNLocals;
+		boolean setsPointer = false;
+		for(VMCommand command : callee) {
+			if(command.getOpcode() == VMCommand.Opcode.POP && command.getSegment() == VMWriter.Segment.POINTER && command.getIndex() == 0) {
+				setsPointer = true;
+			}
+		}
+		String suffix = ".Inline." + siteIndex;
+		String END = callee.get(0).getArgument() + suffix + ".END";
+		boolean needsEnd = false;
+		
+		/* the arguments are on the stack, the last one on top */
+		for(int argument = nArgs - 1; argument >= 0; argument--) {
+			commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.VAR, argumentBase + argument));
+		}
+		if(setsPointer) {
+			commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.POINTER, 0));
+			commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.VAR, savedPointer));
+		}
+		/* a called function's locals start out as 0 */
+		for(int local = 0; local < calleeNLocals; local++) {
+			commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.CONST, 0));
+			commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.VAR, localBase + local));
+		}
+		
+		for(int index = 1; index < callee.size(); index++) {
+			VMCommand command = callee.get(index);
+			switch(command.getOpcode()) {
+			case PUSH:
+			case POP:
+				if(command.getSegment() == VMWriter.Segment.ARG) {
+					commands.add(new VMCommand(command.getOpcode(), VMWriter.Segment.VAR, argumentBase + command.getIndex()));
+				} else if(command.getSegment() == VMWriter.Segment.VAR) {
+					commands.add(new VMCommand(command.getOpcode(), VMWriter.Segment.VAR, localBase + command.getIndex()));
+				} else {
+					commands.add(command);
+				}
+				break;
+			case LABEL:
+			case GOTO:
+			case IF_GOTO:
+				commands.add(new VMCommand(command.getOpcode(), command.getArgument() + suffix, 0));
+				break;
+			case RETURN:
+				/* the return value is on top of the stack, just like it would be after the call */
+				if(index != callee.size() - 1) {
+					commands.add(new VMCommand(VMCommand.Opcode.GOTO, END, 0));
+					needsEnd = true;
+				}
+				break;
+			default:
+				commands.add(command);
+			}
+		}
+		
+		if(needsEnd) {
+			commands.add(new VMCommand(VMCommand.Opcode.LABEL, END, 0));
+		}
+		if(setsPointer) {
+			commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.VAR, savedPointer));
+			commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.POINTER, 0));
+		}
+		return nArgs + calleeNLocals + (setsPointer ? 1 : 0);
+	}
+	
+	/** replaces the 'function' command at functionIndex by one with the given nLocals */
+	private void patchNLocals(ArrayList<VMCommand> commands, int functionIndex, int nLocals) {
+		if(functionIndex >= 0 && commands.get(functionIndex).getIndex() != nLocals) {
+			commands.set(functionIndex, new VMCommand(VMCommand.Opcode.FUNCTION, commands.get(functionIndex).getArgument(), nLocals));
+		}
+	}
+	
+	/** the class-name part of a function name, i.e. 'Main' for 'Main.main' */
+	private String className(String functionName) {
+		return functionName.substring(0, functionName.indexOf('.'));
+	}
+	
+	private int countCommands() {
+		int nCommands = 0;
+		for(VMWriter vmWriter : vmWriters) {
+			nCommands += vmWriter.getCommands().size();
+		}
+		return nCommands;
+	}
+	
+	/** table of (functionName, the function's commands, starting with its 'function' command) of every function in the program */
+	private HashMap<String,ArrayList<VMCommand>> getFunctionTable() {
+		HashMap<String,ArrayList<VMCommand>> functionTable = new HashMap<String,ArrayList<VMCommand>>();
+		for(VMWriter vmWriter : vmWriters) {
+			ArrayList<VMCommand> currentFunction = null;
+			for(VMCommand command : vmWriter.getCommands()) {
+				if(command.getOpcode() == VMCommand.Opcode.FUNCTION) {
+					currentFunction = new ArrayList<VMCommand>();
+					functionTable.put(command.getArgument(), currentFunction);
+				}
+				if(currentFunction != null) {
+					currentFunction.add(command);
+				}
+			}
+		}
+		return functionTable;
+	}
+}
@@ -1,146 +1,295 @@
 package compiler;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
 
+/** collects the VM-commands the CompilationEngine tells it to write and writes them to the output-file once the whole program is compiled.
+ * If the output-file ends in .vmb the commands are written in the binary format (cf. VMBinaryWriter), otherwise as plain .vm text */
 public class VMWriter {
-	private static FileWriter writer;
+	/** the memory segments push and pop can access, along with their name in VM-code. The variable segments are named just like 
+	 * the kinds of variables that live in them (cf. SymbolTable.Kind.getSegment) */
+	public enum Segment {
+		ARG("argument"), VAR("local"), STATIC("static"), FIELD("this"), THAT("that"), POINTER("pointer"), TEMP("temp"), CONST("constant");
+		
+		private final String name;
+		
+		Segment(String name) {
+			this.name = name;
+		}
+		
+		/** the segment's name in VM-code */
+		public String getName() {
+			return name;
+		}
+	}
+	
+	/** a block of commands that has been written as a whole (cf. writeBlock). It stands in for its commands until they're flattened and has no opcode */
+	private static class Block extends VMCommand {
+		private final ArrayList<VMCommand> commands;
+		
+		Block(ArrayList<VMCommand> commands) {
+			super((VMCommand.Opcode) null);
+			this.commands = commands;
+		}
+	}
+	
+	private String outputFile;
+	/** name of the class the commands belong to, i.e. the output-file's name without its extension */
+	private String className;
+	/** every command written so far, in order. While a block is open (cf. startBlock) these are just the block's commands */
+	private ArrayList<VMCommand> commands;
+	/** the commands of the blocks the open block is nested in, innermost one on top */
+	private ArrayDeque<ArrayList<VMCommand>> enclosingBlocks;
+	/** if set, some of the commands are Blocks that still need to be flattened */
+	private boolean hasBlocks;
+	/** if set, nothing is ever written (cf. JackCompiler.checkSyntaxOnly), every write- and edit-function returns right away.
+	 * The writer then always looks empty, i.e. size() is 0 and getCommand returns null */
+	private boolean discardCommands;
 	
 	VMWriter(String outputFile) throws IOException {
-		writer = new FileWriter(outputFile);
+		this(outputFile, false);
 	}
 	
-	public void writePush(String segment, int index) throws IOException {
-		switch(segment) {
-		case("ARG"):
-			writer.write("push argument " + index + "\n");
-			break;
-		case("VAR"):
-			writer.write("push local " + index + "\n");
-			break;
-		case("STATIC"):
-			writer.write("push static " + index + "\n");
-			break;
-		case("FIELD"):
-			writer.write("push this " + index + "\n");
-			break;
-		case("THAT"):
-			writer.write("push that " + index + "\n");
-			break;
-		case("POINTER"):
-			writer.write("push pointer " + index + "\n");
-			break;
-		case("TEMP"):
-			writer.write("push temp " + index + "\n");
-			break;
-		case("CONST"):
-			writer.write("push constant " + index + "\n");
-			break;
-		default:
-			writer.write("INVALID PUSH COMMAND\n");
-			System.out.println("INVALID PUSH COMMAND");
+	VMWriter(String outputFile, boolean discardCommands) throws IOException {
+		this.outputFile = outputFile;
+		this.className = new File(outputFile).getName().replaceAll("\\.[^.]*$", "");
+		this.commands = new ArrayList<VMCommand>();
+		this.enclosingBlocks = new ArrayDeque<ArrayList<VMCommand>>();
+		this.discardCommands = discardCommands;
+	}
+	
+	public String getClassName() {
+		return className;
+	}
+	
+	public ArrayList<VMCommand> getCommands() {
+		flatten();
+		return commands;
+	}
+	
+	/** the amount of commands written so far, i.e. the index of the next command. Within a block (cf. startBlock) that's the amount
+	 * of the block's commands, and a block that has been written counts as one command */
+	public int size() {
+		return commands.size();
+	}
+	
+	/** returns the command at the given index, null if there is none (i.e. index is negative) */
+	public VMCommand getCommand(int index) {
+		return (index >= 0 && index < commands.size()) ? commands.get(index) : null;
+	}
+	
+	public void setCommand(int index, VMCommand command) {
+		if(discardCommands) {
+			return;
 		}
+		commands.set(index, command);
 	}
 	
-	public void writePop(String segment, int index) throws IOException {
-		switch(segment) {
-		case("ARG"):
-			writer.write("pop argument " + index + "\n");
-			break;
-		case("VAR"):
-			writer.write("pop local " + index + "\n");
-			break;
-		case("STATIC"):
-			writer.write("pop static " + index + "\n");
-			break;
-		case("FIELD"):
-			writer.write("pop this " + index + "\n");
-			break;
-		case("THAT"):
-			writer.write("pop that " + index + "\n");
-			break;
-		case("POINTER"):
-			writer.write("pop pointer " + index + "\n");
-			break;
-		case("TEMP"):
-			writer.write("pop temp " + index + "\n");
-			break;
-		case("CONST"):
-			writer.write("pop constant " + index + "\n");
-			break;
-		default:
-			writer.write("INVALID POP COMMAND\n");
-			System.out.println("INVALID POP COMMAND");
+	public void removeLastCommand() {
+		if(discardCommands) {
+			return;
 		}
+		commands.remove(commands.size() - 1);
 	}
 	
-	public void writeArithmetic(String command) throws IOException {
-		switch(command) {
-		case("ADD"):
-			writer.write("add\n");
-			break;
-		case("SUB"):
-			writer.write("sub\n");
-			break;
-		case("NEG"):
-			writer.write("neg\n");
-			break;
-		case("EQ"):
-			writer.write("eq\n");
-			break;
-		case("GT"):
-			writer.write("gt\n");
-			break;
-		case("LT"):
-			writer.write("lt\n");
-			break;
-		case("AND"):
-			writer.write("and\n");
-			break;
-		case("OR"):
-			writer.write("or\n");
-			break;
-		case("NOT"):
-			writer.write("not\n");
-			break;
-		case("MULTIPLY"):
-			writer.write("call Math.multiply 2\n");
+	/** moves the commands from index 'from' (inclusive) to 'to' (exclusive) behind all the other commands, used to lay out 
+	 * code in a different order than the one it's compiled in (cf. CompilationEngine.compileLet). Shifts every command behind 'to', 
+	 * so code that is followed by a lot of other code (e.g. whole statements) should be taken out with cutCommands instead */
+	public void moveToEnd(int from, int to) {
+		if(discardCommands) {
+			return;
+		}
+		ArrayList<VMCommand> moved = new ArrayList<VMCommand>(commands.subList(from, to));
+		commands.subList(from, to).clear();
+		commands.addAll(moved);
+	}
+	
+	/** removes the commands from index 'from' (inclusive) to the end and returns them, so they can be written again later on
+	 * (cf. writeCommands). Only takes as long as the amount of commands removed. Returns an empty list if commands are discarded */
+	public ArrayList<VMCommand> cutCommands(int from) {
+		ArrayList<VMCommand> cut = new ArrayList<VMCommand>();
+		if(discardCommands) {
+			return cut;
+		}
+		cut.addAll(commands.subList(from, commands.size()));
+		commands.subList(from, commands.size()).clear();
+		return cut;
+	}
+	
+	/** appends all the given commands, in order */
+	public void writeCommands(ArrayList<VMCommand> commands) {
+		if(discardCommands) {
+			return;
+		}
+		this.commands.addAll(commands);
+	}
+	
+	/** appends all the commands of other, in order */
+	public void writeCommands(VMWriter other) {
+		if(discardCommands) {
+			return;
+		}
+		commands.addAll(other.getCommands());
+	}
+	
+	/** every command written from now on goes into a new block, until endBlock is called. Used to lay out code in a different order 
+	 * than the one it's compiled in (cf. CompilationEngine.compileIf), since blocks can be written wherever they're needed without 
+	 * moving any commands around, however much code they hold and however deeply they're nested */
+	public void startBlock() {
+		if(discardCommands) {
+			return;
+		}
+		enclosingBlocks.push(commands);
+		commands = new ArrayList<VMCommand>();
+	}
+	
+	/** closes the block startBlock opened, the commands are written to the enclosing block again. Returns the block's commands, 
+	 * to be written with writeBlock. Returns an empty list if commands are discarded */
+	public ArrayList<VMCommand> endBlock() {
+		if(discardCommands) {
+			return new ArrayList<VMCommand>();
+		}
+		ArrayList<VMCommand> block = commands;
+		commands = enclosingBlocks.pop();
+		return block;
+	}
+	
+	/** appends the commands of a block (cf. endBlock) in constant time. They stay a block, i.e. one command, until the writer is closed */
+	public void writeBlock(ArrayList<VMCommand> block) {
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new Block(block));
+		hasBlocks = true;
+	}
+	
+	public void writePush(Segment segment, int index) throws IOException {
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.PUSH, segment, index));
+	}
+	
+	public void writePop(Segment segment, int index) throws IOException {
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.POP, segment, index));
+	}
+	
+	/** writes the VM-command of operator, '*' and '/' are calls to Math.multiply / Math.divide */
+	public void writeArithmetic(Operator operator) throws IOException {
+		if(discardCommands) {
+			return;
+		}
+		switch(operator) {
+		case MULTIPLY:
+			commands.add(new VMCommand(VMCommand.Opcode.CALL, "Math.multiply", 2));
 			break;
-		case("DIVIDE"):
-			writer.write("call Math.divide 2\n");
+		case DIVIDE:
+			commands.add(new VMCommand(VMCommand.Opcode.CALL, "Math.divide", 2));
 			break;
 		default:
-			writer.write("INVALID ARITHMETIC COMMAND\n");
-			System.out.println("INVALID ARITHMETIC COMMAND");
+			commands.add(new VMCommand(operator.getOpcode()));
 		}
 	}
 	
 	
 	public void writeLabel(String label) throws IOException {
-		writer.write("label " + label + "\n");
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.LABEL, label, 0));
 	}
 	
 	public void writeGoto(String label) throws IOException {
-		writer.write("goto " + label + "\n");
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.GOTO, label, 0));
 	}
 	
 	public void writeIf(String label) throws IOException {
-		writer.write("if-goto " + label + "\n");
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.IF_GOTO, label, 0));
 	}
 	
 	public void writeCall(String name, int nArgs) throws IOException {
-		writer.write("call " + name + " " + nArgs + "\n");
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.CALL, name, nArgs));
 	}
 	
 	public void writeFunction(String name, int nLocals) throws IOException {
-		writer.write("function " + name + " " + nLocals + "\n");
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.FUNCTION, name, nLocals));
 	}
 	
 	public void writeReturn() throws IOException {
-		writer.write("return\n");
+		if(discardCommands) {
+			return;
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.RETURN));
 	}
 	
+	/** no more commands will be written after this, so the blocks are flattened. The output-file itself is written by writeOutputFile (cf. VMProgram) */
 	public void close() throws IOException {
-		writer.close();
+		flatten();
+	}
+	
+	/** replaces every Block by its commands, the ones of the Blocks nested in it included. Walks the Blocks with a stack of its own 
+	 * rather than recursively, since they can be nested as deeply as the statements they hold */
+	private void flatten() {
+		if(!hasBlocks) {
+			return;
+		}
+		ArrayList<VMCommand> flattened = new ArrayList<VMCommand>(commands.size());
+		ArrayDeque<Iterator<VMCommand>> stack = new ArrayDeque<Iterator<VMCommand>>();
+		stack.push(commands.iterator());
+		while(!stack.isEmpty()) {
+			if(!stack.peek().hasNext()) {
+				stack.pop();
+				continue;
+			}
+			VMCommand command = stack.peek().next();
+			if(command instanceof Block) {
+				stack.push(((Block) command).commands.iterator());
+			} else {
+				flattened.add(command);
+			}
+		}
+		commands = flattened;
+		hasBlocks = false;
+	}
+	
+	/** writes all the collected commands to the output-file */
+	public void writeOutputFile() throws IOException {
+		if(outputFile.endsWith(VMBinaryWriter.FILE_EXTENSION)) {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile));
+			VMBinaryWriter.write(getCommands(), out);
+			out.close();
+		}
+		else {
+			FileWriter writer = new FileWriter(outputFile);
+			StringBuilder sb = new StringBuilder();
+			for(VMCommand command : getCommands()) {
+				sb.append(command.toString());
+				sb.append("\n");
+			}
+			writer.write(sb.toString());
+			writer.close();
+		}
 	}
 }
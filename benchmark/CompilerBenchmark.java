@@ -0,0 +1,82 @@
+package compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** compile time of CompilationEngine per file (tokenizing, parsing and generating the VM-code, without writing anything), and of
+ * JackCompiler.translate for a whole part of the corpus, whole-program checks and writing the .vm-files included */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerBenchmark {
+	/** each benchmark has a state of its own, so JMH doesn't run every file of compileFile for every part of the corpus of translate */
+	@State(Scope.Benchmark)
+	public static class FileState {
+		/** the file compileFile compiles, given as part/FileName.jack (cf. Corpus.file) */
+		@Param({"os/Math.jack", "os/String.jack", "pong/Ball.jack", "pong/PongGame.jack", "large/Class0.jack"})
+		public String file;
+
+		private String inputFile;
+		private String outputFile;
+
+		@Setup
+		public void setUp() throws IOException {
+			inputFile = Corpus.file(file);
+			outputFile = new File(Files.createTempDirectory("compiled").toFile(), new File(inputFile).getName().replace(".jack", ".vm")).getPath();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class CorpusState {
+		/** the part of the corpus translate translates */
+		@Param({Corpus.OS, Corpus.PONG, Corpus.LARGE})
+		public String corpus;
+
+		/** translate writes its output next to the input, so it works on a copy of the corpus */
+		private String corpusCopy;
+
+		@Setup
+		public void setUp() throws IOException {
+			corpusCopy = Corpus.copy(corpus).getPath();
+		}
+	}
+
+	@Benchmark
+	public VMWriter compileFile(FileState state) throws IOException {
+		return compile(state.inputFile, state.outputFile);
+	}
+
+	@Benchmark
+	public VMProgram translate(CorpusState state) throws IOException {
+		JackCompiler.translate(state.corpusCopy);
+		return JackCompiler.program;
+	}
+
+	/** compiles one file on its own with CompilationEngine, like JackCompiler.translate does for every file but the last one of a program,
+	 * i.e. without the checks across files. Returns the VMWriter holding the file's VM-code */
+	static VMWriter compile(String inputFile, String outputFile) throws IOException {
+		CompilationEngine.startProgram();
+		JackCompiler.directoryIndex = 0;
+		JackCompiler.directoryLength = 2;
+		JackCompiler.tokenizer = new JackTokenizer(inputFile);
+		CompilationEngine compilationEngine = new CompilationEngine(inputFile, outputFile);
+		JackCompiler.tokenizer.close();
+		return compilationEngine.getVMWriter();
+	}
+}
@@ -0,0 +1,77 @@
+package compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/** the .jack-files the benchmarks run over, one directory per part of the corpus:
+ * os (classes of an OS: Math, Memory, Array, String), pong (a Pong-like game) and large (Main and one big class Class0 with 400 functions,
+ * generated by JackGenerator).
+ * os and pong live in benchmark/corpus, which can be changed with -Dcorpus=path, large is generated into a temporary directory */
+final class Corpus {
+	/** the parts of the corpus, also the values of the benchmarks' corpus-parameters */
+	static final String OS = "os";
+	static final String PONG = "pong";
+	static final String LARGE = "large";
+
+	private static File largeDirectory;
+
+	private Corpus() {
+	}
+
+	/** the directory of the given part of the corpus */
+	static synchronized File directory(String name) throws IOException {
+		if(name.equals(LARGE)) {
+			if(largeDirectory == null) {
+				largeDirectory = Files.createTempDirectory("corpus-large").toFile();
+				largeDirectory.deleteOnExit();
+				JackGenerator generator = new JackGenerator();
+				generator.classes = 1;
+				generator.subroutinesPerClass = 400;
+				generator.write(largeDirectory);
+			}
+			return largeDirectory;
+		}
+		File directory = new File(System.getProperty("corpus", "benchmark/corpus"), name);
+		if(!directory.isDirectory()) {
+			throw new IOException("No corpus at '" + directory.getAbsolutePath() + "', run from the repository's root or set -Dcorpus");
+		}
+		return directory;
+	}
+
+	/** the paths of all the .jack-files of the given part of the corpus, sorted by name */
+	static String[] files(String name) throws IOException {
+		File[] files = directory(name).listFiles((directory, fileName) -> fileName.endsWith(".jack"));
+		Arrays.sort(files);
+		String[] paths = new String[files.length];
+		for(int i = 0; i < files.length; i++) {
+			paths[i] = files[i].getPath();
+		}
+		return paths;
+	}
+
+	/** the path of one file of the corpus, given as part/FileName.jack */
+	static String file(String path) throws IOException {
+		int slash = path.indexOf('/');
+		return new File(directory(path.substring(0, slash)), path.substring(slash + 1)).getPath();
+	}
+
+	/** the total size of the given files in bytes */
+	static long bytes(String[] files) {
+		long bytes = 0;
+		for(String file : files) {
+			bytes += new File(file).length();
+		}
+		return bytes;
+	}
+
+	/** copies the given part of the corpus to a new temporary directory, for benchmarks that write their output next to the input */
+	static File copy(String name) throws IOException {
+		File copy = Files.createTempDirectory("corpus-" + name).toFile();
+		for(String file : files(name)) {
+			Files.copy(new File(file).toPath(), new File(copy, new File(file).getName()).toPath());
+		}
+		return copy;
+	}
+}
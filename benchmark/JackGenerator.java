@@ -0,0 +1,274 @@
+package compiler;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/** generates a valid Jack program of a given shape, to see how the compiler scales with the size of its input (cf. ScalingBenchmark).
+ * The program is Main plus the classes Class0, Class1, ..., each with a static Array, a field, a constructor, a getter and its functions.
+ * Every function calls callFanOut functions of the classes after its own (or the ones before it in its own class), so the calls never
+ * go round in circles. Everything else is picked at random, but the same seed always generates the same program. The program also 
+ * runs to its end: loops count to 8, array indices stay within the array, divisions are by constants other than 0 and nothing reads
+ * the array after it's been disposed.
+ *
+ * Can be run on its own: JackGenerator outputDirectory [knob=value ...], e.g. JackGenerator out classes=100 expressionDepth=6 */
+public class JackGenerator {
+	/** the amount of classes, Main not included */
+	int classes = 10;
+	/** the amount of functions of each class, the constructor and getter not included */
+	int subroutinesPerClass = 10;
+	/** the amount of int locals of each function */
+	int localsPerSubroutine = 4;
+	/** the amount of statements of each function, the statements nested in ifs and whiles included */
+	int statementsPerSubroutine = 12;
+	/** how deep the parentheses of each expression are nested */
+	int expressionDepth = 3;
+	/** the probability of a statement being the output of a string literal */
+	double stringLiteralDensity = 0.1;
+	/** the probability of a term being an array access, and of a let-statement assigning to an array element */
+	double arrayAccessDensity = 0.2;
+	/** the amount of calls of each function to functions of other classes */
+	int callFanOut = 2;
+	long seed = 1;
+
+	private static final String[] OPERATORS = {"+", "-", "*", "/", "&", "|"};
+	private static final String[] COMPARISONS = {"<", ">", "="};
+
+	private Random random;
+	private StringBuilder sb;
+	/** how deep the whiles of the current function are nested, each level has a counter of its own: i0, i1, ... */
+	private int loops;
+
+	/** writes Main.jack and every class to directory, which is created if it doesn't exist yet */
+	public void write(File directory) throws IOException {
+		directory.mkdirs();
+		random = new Random(seed);
+		for(int index = 0; index < classes; index++) {
+			writeFile(new File(directory, className(index) + ".jack"), generateClass(index));
+		}
+		writeFile(new File(directory, "Main.jack"), generateMain());
+	}
+
+	static String className(int index) {
+		return "Class" + index;
+	}
+
+	private String generateMain() {
+		sb = new StringBuilder();
+		sb.append("class Main {\n    function void main() {\n        var int result;\n");
+		for(int index = 0; index < classes && subroutinesPerClass > 0; index++) {
+			sb.append("        let result = ").append(className(index)).append(".f0(").append(index).append(", 1);\n");
+		}
+		sb.append("        return;\n    }\n}\n");
+		return sb.toString();
+	}
+
+	private String generateClass(int index) {
+		String className = className(index);
+		sb = new StringBuilder();
+		sb.append("class ").append(className).append(" {\n");
+		sb.append("    static Array table;\n    field int value;\n\n");
+		sb.append("    constructor ").append(className).append(" new(int initialValue) {\n");
+		sb.append("        let value = initialValue;\n        return this;\n    }\n\n");
+		sb.append("    method int getValue() {\n        return value;\n    }\n\n");
+		for(int subroutine = 0; subroutine < subroutinesPerClass; subroutine++) {
+			generateFunction(index, subroutine);
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private void generateFunction(int classIndex, int subroutine) {
+		/* the statements are generated first, the loop-counters they need are only known afterwards */
+		StringBuilder classBuilder = sb;
+		sb = new StringBuilder();
+		loops = 0;
+
+		/* the calls are spread over the statements */
+		int calls = 0;
+		int statements = 0;
+		while(statements < statementsPerSubroutine) {
+			if(calls < callFanOut && random.nextInt(statementsPerSubroutine) < callFanOut) {
+				generateCall(classIndex, subroutine, 2);
+				calls++;
+			}
+			statements += generateStatement(2, 0, statementsPerSubroutine - statements);
+		}
+		while(calls < callFanOut) {
+			generateCall(classIndex, subroutine, 2);
+			calls++;
+		}
+		StringBuilder statementsBuilder = sb;
+		sb = classBuilder;
+		
+		sb.append("    function int f").append(subroutine).append("(int a, int b) {\n");
+		if(localsPerSubroutine > 0) {
+			sb.append("        var int ");
+			for(int local = 0; local < localsPerSubroutine; local++) {
+				sb.append(local > 0 ? ", " : "").append("l").append(local);
+			}
+			sb.append(";\n");
+		}
+		for(int loop = 0; loop < loops; loop++) {
+			sb.append("        var int i").append(loop).append(";\n");
+		}
+		sb.append("        var int result;\n");
+		sb.append("        var Array array;\n");
+		sb.append("        let array = Array.new(8);\n");
+		for(int local = 0; local < localsPerSubroutine; local++) {
+			sb.append("        let l").append(local).append(" = ").append(local).append(";\n");
+		}
+		sb.append(statementsBuilder);
+		/* the return value may read the array, so it's evaluated before the array is disposed */
+		sb.append("        let result = ").append(generateExpression(expressionDepth)).append(";\n");
+		sb.append("        do array.dispose();\n");
+		sb.append("        return result;\n    }\n\n");
+	}
+
+	/** generates one statement, which may nest up to maxStatements - 1 more in an if or while, loopDepth being the amount of whiles 
+	 * it's nested in. Returns the amount of statements generated */
+	private int generateStatement(int indentation, int loopDepth, int maxStatements) {
+		String indent = indent(indentation);
+		if(random.nextDouble() < stringLiteralDensity) {
+			sb.append(indent).append("do Output.printString(\"").append(stringLiteral()).append("\");\n");
+			return 1;
+		}
+		int choice = random.nextInt(maxStatements > 2 ? 5 : 3);
+		if(choice == 3) {
+			sb.append(indent).append("if (").append(generateCondition()).append(") {\n");
+			int nested = 1 + generateStatement(indentation + 1, loopDepth, maxStatements - 1);
+			sb.append(indent).append("}\n").append(indent).append("else {\n");
+			sb.append(indent).append("    let ").append(variable()).append(" = ").append(generateExpression(expressionDepth)).append(";\n");
+			sb.append(indent).append("}\n");
+			return nested + 1;
+		}
+		if(choice == 4) {
+			String counter = "i" + loopDepth;
+			loops = Math.max(loops, loopDepth + 1);
+			sb.append(indent).append("let ").append(counter).append(" = 0;\n");
+			sb.append(indent).append("while (").append(counter).append(" < 8) {\n");
+			int nested = 1 + generateStatement(indentation + 1, loopDepth + 1, maxStatements - 2);
+			sb.append(indent).append("    let ").append(counter).append(" = ").append(counter).append(" + 1;\n");
+			sb.append(indent).append("}\n");
+			return nested + 2;
+		}
+		if(random.nextDouble() < arrayAccessDensity) {
+			sb.append(indent).append("let array[").append(arrayIndex()).append("] = ").append(generateExpression(expressionDepth)).append(";\n");
+		}
+		else {
+			sb.append(indent).append("let ").append(variable()).append(" = ").append(generateExpression(expressionDepth)).append(";\n");
+		}
+		return 1;
+	}
+
+	/** a call to a function of a class after classIndex, or one before subroutine of the same class if there's no class after it */
+	private void generateCall(int classIndex, int subroutine, int indentation) {
+		int calledClass;
+		int calledSubroutine;
+		if(classIndex + 1 < classes && subroutinesPerClass > 0) {
+			calledClass = classIndex + 1 + random.nextInt(classes - classIndex - 1);
+			calledSubroutine = random.nextInt(subroutinesPerClass);
+		}
+		else if(subroutine > 0) {
+			calledClass = classIndex;
+			calledSubroutine = random.nextInt(subroutine);
+		}
+		else {
+			return;
+		}
+		/* the arguments are never calls themselves */
+		sb.append(indent(indentation)).append("let ").append(variable()).append(" = ").append(className(calledClass))
+			.append(".f").append(calledSubroutine).append("(").append(generateExpression(1)).append(", ").append(leaf()).append(");\n");
+	}
+
+	private String generateCondition() {
+		return generateExpression(expressionDepth - 1) + " " + COMPARISONS[random.nextInt(COMPARISONS.length)] + " " + leaf();
+	}
+
+	/** an expression whose parentheses are nested depth deep, e.g. ((a + 3) * array[l0]) for a depth of 2. A division is always by a 
+	 * constant other than 0, since Math.divide never returns when dividing by 0 */
+	private String generateExpression(int depth) {
+		if(depth <= 0) {
+			return leaf();
+		}
+		String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+		String divisor = operator.equals("/") ? Integer.toString(1 + random.nextInt(99)) : leaf();
+		return "(" + generateExpression(depth - 1) + " " + operator + " " + divisor + ")";
+	}
+
+	/** a term without any operators: a variable, a constant or an array access */
+	private String leaf() {
+		if(random.nextDouble() < arrayAccessDensity) {
+			return "array[" + arrayIndex() + "]";
+		}
+		switch(random.nextInt(3)) {
+		case(0): return variable();
+		case(1): return Integer.toString(random.nextInt(100));
+		default: return random.nextBoolean() ? "a" : "b";
+		}
+	}
+
+	/** a variable that can be assigned to, a parameter if there aren't any locals */
+	private String variable() {
+		if(localsPerSubroutine == 0) {
+			return "a";
+		}
+		return "l" + random.nextInt(localsPerSubroutine);
+	}
+
+	private String arrayIndex() {
+		return Integer.toString(random.nextInt(8));
+	}
+
+	private String stringLiteral() {
+		int length = 4 + random.nextInt(12);
+		StringBuilder literal = new StringBuilder();
+		for(int i = 0; i < length; i++) {
+			literal.append((char)('a' + random.nextInt(26)));
+		}
+		return literal.toString();
+	}
+
+	private static String indent(int indentation) {
+		StringBuilder indent = new StringBuilder();
+		for(int i = 0; i < indentation; i++) {
+			indent.append("    ");
+		}
+		return indent.toString();
+	}
+
+	private static void writeFile(File file, String content) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.out.println("Usage: JackGenerator outputDirectory [knob=value ...], the knobs being classes, subroutinesPerClass, "
+					+ "localsPerSubroutine, statementsPerSubroutine, expressionDepth, stringLiteralDensity, arrayAccessDensity, callFanOut and seed");
+			return;
+		}
+		JackGenerator generator = new JackGenerator();
+		for(int i = 1; i < args.length; i++) {
+			String[] knob = args[i].split("=", 2);
+			if(knob.length != 2) {
+				throw new IllegalArgumentException("Expected knob=value instead of '" + args[i] + "'");
+			}
+			switch(knob[0]) {
+			case("classes"): generator.classes = Integer.parseInt(knob[1]); break;
+			case("subroutinesPerClass"): generator.subroutinesPerClass = Integer.parseInt(knob[1]); break;
+			case("localsPerSubroutine"): generator.localsPerSubroutine = Integer.parseInt(knob[1]); break;
+			case("statementsPerSubroutine"): generator.statementsPerSubroutine = Integer.parseInt(knob[1]); break;
+			case("expressionDepth"): generator.expressionDepth = Integer.parseInt(knob[1]); break;
+			case("stringLiteralDensity"): generator.stringLiteralDensity = Double.parseDouble(knob[1]); break;
+			case("arrayAccessDensity"): generator.arrayAccessDensity = Double.parseDouble(knob[1]); break;
+			case("callFanOut"): generator.callFanOut = Integer.parseInt(knob[1]); break;
+			case("seed"): generator.seed = Long.parseLong(knob[1]); break;
+			default: throw new IllegalArgumentException("Unknown knob '" + knob[0] + "'");
+			}
+		}
+		generator.write(new File(args[0]));
+	}
+}
@@ -0,0 +1,55 @@
+package compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JackCompiler.translate over programs generated by JackGenerator. If the time per class (or per subroutine) goes up as the program
+ * grows, something scales worse than linearly, e.g. a check that runs over the whole program once per class. The knobs that aren't
+ * parameters here keep JackGenerator's defaults */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ScalingBenchmark {
+	@Param({"10", "100", "1000"})
+	public int classes;
+	@Param({"10", "100"})
+	public int subroutinesPerClass;
+	@Param({"3"})
+	public int expressionDepth;
+
+	private String directory;
+
+	@Setup
+	public void setUp() throws IOException {
+		File generated = Files.createTempDirectory("generated").toFile();
+		JackGenerator generator = new JackGenerator();
+		generator.classes = classes;
+		generator.subroutinesPerClass = subroutinesPerClass;
+		generator.expressionDepth = expressionDepth;
+		generator.write(generated);
+		directory = generated.getPath();
+	}
+
+	@Benchmark
+	public VMProgram translate() throws IOException {
+		JackCompiler.translate(directory);
+		return JackCompiler.program;
+	}
+}
@@ -0,0 +1,77 @@
+package compiler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** defining the variables of a subroutine on the subroutine-level SymbolTable, and looking them up the way a subroutine's statements do:
+ * locals, arguments, fields and statics (found on the class-level table), the same name a couple of times in a row, and class names,
+ * which aren't found at all (e.g. the 'Output' of 'do Output.printInt(x)') */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolTableBenchmark {
+	private static final String[] STATICS = {"instance", "table", "count"};
+	private static final String[] FIELDS = {"x", "y", "width", "height", "direction", "score"};
+	private static final String[] ARGUMENTS = {"Ax", "Ay", "Awidth"};
+	private static final String[] LOCALS = {"i", "j", "sum", "key", "values", "result"};
+	/** the names a subroutine's statements look up, in order */
+	private static final String[] LOOKUPS = {
+		"i", "i", "values", "i", "sum", "sum", "x", "Ax", "x", "width", "Output", "sum", "key", "Keyboard", "key",
+		"direction", "y", "height", "Screen", "x", "y", "table", "j", "j", "result", "Memory", "score", "instance", "Awidth", "i"
+	};
+
+	private SymbolTable classLevelSymbolTable;
+	private SymbolTable subroutineLevelSymbolTable;
+
+	@Setup
+	public void setUp() {
+		classLevelSymbolTable = new SymbolTable();
+		for(String name : STATICS) {
+			classLevelSymbolTable.define(name, "int", SymbolTable.Kind.STATIC);
+		}
+		for(String name : FIELDS) {
+			classLevelSymbolTable.define(name, "int", SymbolTable.Kind.FIELD);
+		}
+		subroutineLevelSymbolTable = new SymbolTable(classLevelSymbolTable);
+		define();
+	}
+
+	/** starts a subroutine and defines its arguments and locals */
+	@Benchmark
+	public int define() {
+		subroutineLevelSymbolTable.startSubroutine();
+		for(String name : ARGUMENTS) {
+			subroutineLevelSymbolTable.define(name, "int", SymbolTable.Kind.ARG);
+		}
+		for(String name : LOCALS) {
+			subroutineLevelSymbolTable.define(name, "Array", SymbolTable.Kind.VAR);
+		}
+		return subroutineLevelSymbolTable.varCount(SymbolTable.Kind.VAR);
+	}
+
+	/** looks up every name of LOOKUPS on the subroutine-level table */
+	@Benchmark
+	public int resolve() {
+		int sum = 0;
+		for(String name : LOOKUPS) {
+			SymbolTable.Entry entry = subroutineLevelSymbolTable.resolve(name);
+			if(entry != null) {
+				sum += entry.getIndex();
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,72 @@
+package compiler;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** how fast JackTokenizer splits a part of the corpus into tokens and types them, the way CompilationEngine reads them.
+ * Next to the runs per second, the tokens, bytes and megabytes counters give tokens/s, bytes/s and MB/s */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+	@Param({Corpus.OS, Corpus.PONG, Corpus.LARGE})
+	public String corpus;
+
+	private String[] files;
+	private long bytes;
+
+	/** JMH reports each public field as a rate, i.e. per second */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public long tokens;
+		public long bytes;
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			tokens = 0;
+			bytes = 0;
+			megabytes = 0;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		files = Corpus.files(corpus);
+		bytes = Corpus.bytes(files);
+	}
+
+	@Benchmark
+	public void tokenize(Counters counters, Blackhole blackhole) throws IOException {
+		for(String file : files) {
+			JackTokenizer tokenizer = new JackTokenizer(file);
+			while(tokenizer.hasMoreTokens()) {
+				tokenizer.advance();
+				blackhole.consume(tokenizer.tokenType(tokenizer.getCurrentToken()));
+				counters.tokens++;
+			}
+			tokenizer.close();
+		}
+		counters.bytes += bytes;
+		counters.megabytes += bytes / 1e6;
+	}
+}
@@ -0,0 +1,118 @@
+package compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** VMWriter on its own: emit writes the VM-code of a part of the corpus (compiled once in setUp) command by command, the way
+ * CompilationEngine does, writeOutputFile writes the collected commands to the .vm-files (or .vmb-files with binary set) */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VMWriterBenchmark {
+	@Param({Corpus.OS, Corpus.PONG, Corpus.LARGE})
+	public String corpus;
+	@Param({"false", "true"})
+	public boolean binary;
+
+	/** the output-file and the commands of every file of the corpus */
+	private String[] outputFiles;
+	private VMCommand[][] commands;
+	/** the operator of each arithmetic command of commands, looked up once in setUp */
+	private Operator[][] operators;
+	/** the VMWriters holding the compiled corpus, for writeOutputFile */
+	private VMWriter[] vmWriters;
+
+	@Setup
+	public void setUp() throws IOException {
+		String[] files = Corpus.files(corpus);
+		File outputDirectory = Files.createTempDirectory("written").toFile();
+		outputFiles = new String[files.length];
+		commands = new VMCommand[files.length][];
+		operators = new Operator[files.length][];
+		vmWriters = new VMWriter[files.length];
+		for(int i = 0; i < files.length; i++) {
+			String extension = binary ? VMBinaryWriter.FILE_EXTENSION : ".vm";
+			outputFiles[i] = new File(outputDirectory, new File(files[i]).getName().replace(".jack", extension)).getPath();
+			vmWriters[i] = CompilerBenchmark.compile(files[i], outputFiles[i]);
+			ArrayList<VMCommand> fileCommands = vmWriters[i].getCommands();
+			commands[i] = fileCommands.toArray(new VMCommand[fileCommands.size()]);
+			operators[i] = new Operator[commands[i].length];
+			for(int j = 0; j < commands[i].length; j++) {
+				switch(commands[i][j].getOpcode()) {
+				case PUSH:
+				case POP:
+				case LABEL:
+				case GOTO:
+				case IF_GOTO:
+				case CALL:
+				case FUNCTION:
+				case RETURN: break;
+				default: operators[i][j] = operator(commands[i][j].getOpcode());
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public int emit() throws IOException {
+		int size = 0;
+		for(int i = 0; i < commands.length; i++) {
+			VMWriter vmWriter = new VMWriter(outputFiles[i]);
+			for(int j = 0; j < commands[i].length; j++) {
+				write(vmWriter, commands[i][j], operators[i][j]);
+			}
+			vmWriter.close();
+			size += vmWriter.size();
+		}
+		return size;
+	}
+
+	@Benchmark
+	public void writeOutputFile() throws IOException {
+		for(VMWriter vmWriter : vmWriters) {
+			vmWriter.writeOutputFile();
+		}
+	}
+
+	/** writes command with the matching write-function of vmWriter */
+	private static void write(VMWriter vmWriter, VMCommand command, Operator operator) throws IOException {
+		switch(command.getOpcode()) {
+		case PUSH: vmWriter.writePush(command.getSegment(), command.getIndex()); break;
+		case POP: vmWriter.writePop(command.getSegment(), command.getIndex()); break;
+		case LABEL: vmWriter.writeLabel(command.getArgument()); break;
+		case GOTO: vmWriter.writeGoto(command.getArgument()); break;
+		case IF_GOTO: vmWriter.writeIf(command.getArgument()); break;
+		case CALL: vmWriter.writeCall(command.getArgument(), command.getIndex()); break;
+		case FUNCTION: vmWriter.writeFunction(command.getArgument(), command.getIndex()); break;
+		case RETURN: vmWriter.writeReturn(); break;
+		default: vmWriter.writeArithmetic(operator);
+		}
+	}
+
+	private static Operator operator(VMCommand.Opcode opcode) {
+		for(Operator operator : Operator.values()) {
+			if(operator.getOpcode() == opcode) {
+				return operator;
+			}
+		}
+		throw new IllegalArgumentException("Unknown command '" + opcode.getName() + "'");
+	}
+}
@@ -0,0 +1,207 @@
+package compiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** checks that compilations running at the same time in one JVM don't share any state, i.e. that classes compiled concurrently come out
+ * exactly like classes compiled one after the other:
+ * - symbolTables: every thread defines and resolves variables on class- and subroutine-level SymbolTables of its own, whose indices
+ *   must only depend on that thread's own definitions
+ * - compile: the classes of each part of the corpus (cf. Corpus) are compiled one after the other, then all at once on several threads,
+ *   a couple of rounds. Once by CompilationEngine (each with a JackTokenizer of its own), once by AstCompiler (from tokens read up 
+ *   front) with and without JackCompiler.parallelSubroutines. Every class's VM-code and errors and everything the ProgramRegistry 
+ *   knows afterwards must be the same as in the serial run
+ * This covers compiling classes, not JackCompiler.translate: translate keeps its settings, the program and its diagnostics in static
+ * fields, so one JVM can only run one translate at a time.
+ *
+ * There's no build file, so compile and run it from the repository's root (it uses the benchmarks' corpus):
+ *
+ *	javac -d test/classes *.java benchmark/Corpus.java benchmark/JackGenerator.java test/*.java
+ *	java -cp test/classes compiler.ConcurrentCompilationTest
+ *
+ * Prints what differs and exits with status 1 if anything does */
+public class ConcurrentCompilationTest {
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 10;
+	/** JackCompiler.parallelSubroutines of every other round */
+	private static final int PARALLEL_SUBROUTINES = 4;
+
+	/** what compiling one class resulted in */
+	private static class Result {
+		private final String vmCode;
+		private final String diagnostics;
+
+		Result(VMWriter vmWriter, ArrayList<Diagnostic> diagnostics) {
+			StringBuilder sb = new StringBuilder();
+			for(VMCommand command : vmWriter.getCommands()) {
+				sb.append(command).append('\n');
+			}
+			vmCode = sb.toString();
+			this.diagnostics = diagnostics.toString();
+		}
+
+		boolean equals(Result other) {
+			return vmCode.equals(other.vmCode) && diagnostics.equals(other.diagnostics);
+		}
+	}
+
+	private static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		symbolTables();
+		for(String part : new String[] {Corpus.OS, Corpus.PONG, Corpus.LARGE}) {
+			compile(part, false);
+			compile(part, true);
+		}
+		System.out.println(failures == 0 ? "OK" : failures + " failure(s)");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static void symbolTables() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		ArrayList<Future<String>> tasks = new ArrayList<Future<String>>();
+		for(int thread = 0; thread < THREADS; thread++) {
+			int nVariables = 10 + thread;
+			tasks.add(executor.submit(() -> {
+				start.await();
+				for(int round = 0; round < 1000; round++) {
+					String failure = defineAndResolve(nVariables);
+					if(failure != null) {
+						return failure;
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for(Future<String> task : tasks) {
+			check("symbolTables", task.get() == null, task.get());
+		}
+		executor.shutdown();
+	}
+
+	/** defines nVariables of every kind on new tables and resolves them again, returns what went wrong or null */
+	private static String defineAndResolve(int nVariables) {
+		SymbolTable classLevelSymbolTable = new SymbolTable();
+		SymbolTable subroutineLevelSymbolTable = new SymbolTable(classLevelSymbolTable);
+		for(int index = 0; index < nVariables; index++) {
+			classLevelSymbolTable.define("field" + index, "int", SymbolTable.Kind.FIELD);
+			classLevelSymbolTable.define("static" + index, "int", SymbolTable.Kind.STATIC);
+		}
+		for(int subroutine = 0; subroutine < 3; subroutine++) {
+			subroutineLevelSymbolTable.startSubroutine();
+			for(int index = 0; index < nVariables; index++) {
+				subroutineLevelSymbolTable.define("argument" + index, "int", SymbolTable.Kind.ARG);
+				subroutineLevelSymbolTable.define("local" + index, "int", SymbolTable.Kind.VAR);
+			}
+			for(int index = 0; index < nVariables; index++) {
+				for(String name : new String[] {"field", "static", "argument", "local"}) {
+					SymbolTable.Entry entry = subroutineLevelSymbolTable.resolve(name + index);
+					if(entry == null || entry.getIndex() != index) {
+						return "'" + name + index + "' resolved to " + (entry == null ? "nothing" : "index " + entry.getIndex());
+					}
+				}
+			}
+		}
+		for(SymbolTable.Kind kind : SymbolTable.Kind.values()) {
+			SymbolTable table = (kind == SymbolTable.Kind.FIELD || kind == SymbolTable.Kind.STATIC) ? classLevelSymbolTable : subroutineLevelSymbolTable;
+			if(table.varCount(kind) != nVariables - 1) {
+				return "varCount(" + kind + ") is " + table.varCount(kind) + " instead of " + (nVariables - 1);
+			}
+		}
+		return null;
+	}
+
+	/** compiles the classes of part with AstCompiler if astMode is set, with CompilationEngine otherwise */
+	private static void compile(String part, boolean astMode) throws Exception {
+		String[] files = Corpus.files(part);
+		HashMap<String,JackAst.Tokens> tokens = new HashMap<String,JackAst.Tokens>();
+		for(String file : files) {
+			JackTokenizer tokenizer = new JackTokenizer(file);
+			tokens.put(file, new JackAst.Tokens(tokenizer));
+			tokenizer.close();
+		}
+		int parallelSubroutines = JackCompiler.parallelSubroutines;
+
+		/* one after the other */
+		JackCompiler.parallelSubroutines = 0;
+		ProgramRegistry serialRegistry = new ProgramRegistry();
+		HashMap<String,Result> serialResults = new HashMap<String,Result>();
+		for(String file : files) {
+			serialResults.put(file, compile(file, astMode, tokens, serialRegistry));
+		}
+		String serialRegistryContents = describe(serialRegistry);
+
+		/* all at once */
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		for(int round = 0; round < ROUNDS; round++) {
+			JackCompiler.parallelSubroutines = (round % 2 == 0) ? 0 : PARALLEL_SUBROUTINES;
+			ProgramRegistry registry = new ProgramRegistry();
+			CountDownLatch start = new CountDownLatch(1);
+			HashMap<String,Future<Result>> tasks = new HashMap<String,Future<Result>>();
+			for(String file : files) {
+				tasks.put(file, executor.submit(() -> {
+					start.await();
+					return compile(file, astMode, tokens, registry);
+				}));
+			}
+			start.countDown();
+			String name = part + ", round " + round + (astMode ? " (AstCompiler, parallelSubroutines " + JackCompiler.parallelSubroutines + ")" : " (CompilationEngine)");
+			for(String file : files) {
+				check(name, tasks.get(file).get().equals(serialResults.get(file)), "the VM-code or errors of '" + file + "' differ");
+			}
+			check(name, describe(registry).equals(serialRegistryContents), "the registry differs");
+		}
+		executor.shutdown();
+		JackCompiler.parallelSubroutines = parallelSubroutines;
+		System.out.println(part + (astMode ? " (AstCompiler): " : " (CompilationEngine): ") + files.length + " classes, " + ROUNDS + " rounds on " + THREADS + " threads");
+	}
+
+	private static Result compile(String file, boolean astMode, HashMap<String,JackAst.Tokens> tokens, ProgramRegistry registry) throws IOException {
+		String outputFile = file.replace(".jack", ".vm");
+		if(astMode) {
+			AstCompiler astCompiler = new AstCompiler(file, outputFile, tokens.get(file), registry);
+			return new Result(astCompiler.getVMWriter(), astCompiler.getDiagnostics());
+		}
+		JackTokenizer tokenizer = new JackTokenizer(file);
+		CompilationEngine compilationEngine = new CompilationEngine(file, outputFile, tokenizer, registry, false);
+		tokenizer.close();
+		return new Result(compilationEngine.getVMWriter(), compilationEngine.getDiagnostics());
+	}
+
+	/** everything the registry knows, sorted, so registries that have been filled in a different order can be compared */
+	private static String describe(ProgramRegistry registry) {
+		StringBuilder sb = new StringBuilder();
+		for(ProgramRegistry.Subroutine subroutine : registry.getSubroutines()) {
+			sb.append(subroutine.getFunctionName()).append(' ').append(subroutine.getKind()).append(' ').append(subroutine.getNArgs())
+				.append(' ').append(subroutine.isDeclared()).append(' ').append(subroutine.getReturnType()).append('\n');
+		}
+		sb.append("declared ").append(registry.getDeclaredClasses()).append('\n');
+		sb.append("undeclared ").append(registry.getUndeclaredClasses()).append('\n');
+		sb.append("conflicts ").append(registry.getConflicts()).append('\n');
+		for(String className : registry.getDeclaredClasses()) {
+			ArrayList<String> names = new ArrayList<String>(registry.getClassVariables(className).keySet());
+			Collections.sort(names);
+			for(String name : names) {
+				SymbolTable.Entry entry = registry.getClassVariables(className).get(name);
+				sb.append(className).append('.').append(name).append(' ').append(entry.getKind()).append(' ')
+					.append(entry.getType()).append(' ').append(entry.getIndex()).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void check(String name, boolean condition, String message) {
+		if(!condition) {
+			failures++;
+			System.out.println("FAILED " + name + ": " + message);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package compiler;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** checks that the comparisons HackAssemblyWriter translates to hold for all operands, in particular the extreme ones where x - y
+ * doesn't fit into 16 bits (e.g. 20000 > -20000, 32767 > -1, -32768 < 1). Every pair of VALUES is compared with eq, gt and lt, as a
+ * boolean and followed by '(not) if-goto' (cf. Form), the booleans are stored in RAM[1000...] and checked after running the 
+ * translated program on the small Hack CPU below, with the comparisons translated inline and as jumps into the shared routines 
+ * (cf. JackCompiler.optimizeAssemblyForSize).
+ *
+ * There's no build file, so compile and run it from the repository's root:
+ *
+ *	javac -d test/classes *.java test/HackComparisonTest.java
+ *	java -cp test/classes compiler.HackComparisonTest
+ *
+ * Prints what differs and exits with status 1 if anything does */
+public class HackComparisonTest {
+	private static final int[] VALUES = {-32768, -32767, -20000, -1, 0, 1, 20000, 32767};
+	private static final VMCommand.Opcode[] COMPARISONS = {VMCommand.Opcode.EQ, VMCommand.Opcode.GT, VMCommand.Opcode.LT};
+	/** the booleans are stored from here on (through THAT) */
+	private static final int RESULTS = 1000;
+	private static final int MAX_STEPS = 1000000;
+
+	/** how the comparison is used: as a boolean, by 'if-goto' or by 'not, if-goto' (HackAssemblyWriter jumps on the latter two directly) */
+	private enum Form { BOOLEAN, IF_GOTO, NOT_IF_GOTO }
+
+	private static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		run(false);
+		run(true);
+		System.out.println(failures == 0 ? "OK" : failures + " failure(s)");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/** translates Sys.init storing every comparison of VALUES, runs it and checks the results */
+	private static void run(boolean optimizeForSize) throws Exception {
+		ArrayList<VMCommand> commands = new ArrayList<VMCommand>();
+		ArrayList<Boolean> expected = new ArrayList<Boolean>();
+		commands.add(new VMCommand(VMCommand.Opcode.FUNCTION, "Sys.init", 0));
+		commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.CONST, RESULTS));
+		commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.POINTER, 1));
+		for(int x : VALUES) {
+			for(int y : VALUES) {
+				for(VMCommand.Opcode comparison : COMPARISONS) {
+					for(Form form : Form.values()) {
+						writeComparison(commands, form, comparison, x, y, expected.size());
+						expected.add(holds(comparison, x, y) != (form == Form.NOT_IF_GOTO));
+					}
+				}
+			}
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.LABEL, "HALT", 0));
+		commands.add(new VMCommand(VMCommand.Opcode.GOTO, "HALT", 0));
+
+		HackAssemblyWriter hackAssemblyWriter = new HackAssemblyWriter(optimizeForSize);
+		hackAssemblyWriter.writeBootstrap();
+		hackAssemblyWriter.writeCommands("Sys", commands);
+		hackAssemblyWriter.writeSharedRoutines();
+		File asmFile = File.createTempFile("HackComparisonTest", ".asm");
+		hackAssemblyWriter.writeFile(asmFile.getPath());
+		short[] ram = execute(Files.readAllLines(asmFile.toPath()));
+		asmFile.delete();
+
+		int index = 0;
+		for(int x : VALUES) {
+			for(int y : VALUES) {
+				for(VMCommand.Opcode comparison : COMPARISONS) {
+					for(Form form : Form.values()) {
+						short result = ram[RESULTS + index];
+						boolean correct = result == (expected.get(index) ? -1 : 0);
+						check("optimizeForSize " + optimizeForSize, correct, x + " " + comparison.getName() + " " + y + " (" + form + ") is " + result);
+						index++;
+					}
+				}
+			}
+		}
+	}
+
+	/** stores x comparison y in that[index], as the boolean itself or as whether '(not) if-goto' after it jumped */
+	private static void writeComparison(List<VMCommand> commands, Form form, VMCommand.Opcode comparison, int x, int y, int index) {
+		pushValue(commands, x);
+		pushValue(commands, y);
+		commands.add(new VMCommand(comparison));
+		if(form == Form.BOOLEAN) {
+			commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.THAT, index));
+			return;
+		}
+		if(form == Form.NOT_IF_GOTO) {
+			commands.add(new VMCommand(VMCommand.Opcode.NOT));
+		}
+		commands.add(new VMCommand(VMCommand.Opcode.IF_GOTO, "JUMPED" + index, 0));
+		commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.CONST, 0));
+		commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.THAT, index));
+		commands.add(new VMCommand(VMCommand.Opcode.GOTO, "STORED" + index, 0));
+		commands.add(new VMCommand(VMCommand.Opcode.LABEL, "JUMPED" + index, 0));
+		commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.CONST, 1));
+		commands.add(new VMCommand(VMCommand.Opcode.NEG));
+		commands.add(new VMCommand(VMCommand.Opcode.POP, VMWriter.Segment.THAT, index));
+		commands.add(new VMCommand(VMCommand.Opcode.LABEL, "STORED" + index, 0));
+	}
+
+	/** pushes value, which 'push constant' alone can only do for 0...32767 */
+	private static void pushValue(List<VMCommand> commands, int value) {
+		if(value == -32768) {
+			commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.CONST, 32767));
+			commands.add(new VMCommand(VMCommand.Opcode.NEG));
+			commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.CONST, 1));
+			commands.add(new VMCommand(VMCommand.Opcode.SUB));
+		} else {
+			commands.add(new VMCommand(VMCommand.Opcode.PUSH, VMWriter.Segment.CONST, Math.abs(value)));
+			if(value < 0) {
+				commands.add(new VMCommand(VMCommand.Opcode.NEG));
+			}
+		}
+	}
+
+	private static boolean holds(VMCommand.Opcode comparison, int x, int y) {
+		switch(comparison) {
+		case EQ:
+			return x == y;
+		case GT:
+			return x > y;
+		default:
+			return x < y;
+		}
+	}
+
+	/** assembles the program and runs it until it jumps onto itself (i.e. reaches 'label HALT, goto HALT'), returns the RAM */
+	private static short[] execute(List<String> lines) {
+		HashMap<String,Integer> symbols = new HashMap<String,Integer>();
+		for(int register = 0; register < 16; register++) {
+			symbols.put("R" + register, register);
+		}
+		String[] pointers = {"SP", "LCL", "ARG", "THIS", "THAT"};
+		for(int pointer = 0; pointer < pointers.length; pointer++) {
+			symbols.put(pointers[pointer], pointer);
+		}
+		ArrayList<String> instructions = new ArrayList<String>();
+		for(String line : lines) {
+			if(line.startsWith("(")) {
+				symbols.put(line.substring(1, line.length() - 1), instructions.size());
+			} else if(!line.isEmpty() && !line.startsWith("//")) {
+				instructions.add(line);
+			}
+		}
+		int nextVariable = 16;
+		short[] ram = new short[32768];
+		int A = 0;
+		int D = 0;
+		int pc = 0;
+		for(int step = 0; step < MAX_STEPS; step++) {
+			String instruction = instructions.get(pc);
+			if(instruction.startsWith("@")) {
+				String symbol = instruction.substring(1);
+				if(Character.isDigit(symbol.charAt(0))) {
+					A = Integer.parseInt(symbol);
+				} else {
+					if(!symbols.containsKey(symbol)) {
+						symbols.put(symbol, nextVariable++);
+					}
+					A = symbols.get(symbol);
+				}
+				pc++;
+				continue;
+			}
+			String dest = instruction.contains("=") ? instruction.substring(0, instruction.indexOf('=')) : "";
+			String comp = instruction.substring(dest.isEmpty() ? 0 : dest.length() + 1).split(";")[0];
+			String jump = instruction.contains(";") ? instruction.substring(instruction.indexOf(';') + 1) : "";
+			short result = (short)compute(comp, A, D, ram[A & 0x7FFF]);
+			int address = A;
+			if(dest.contains("M")) {
+				ram[address & 0x7FFF] = result;
+			}
+			if(dest.contains("A")) {
+				A = result;
+			}
+			if(dest.contains("D")) {
+				D = result;
+			}
+			if(jumps(jump, result)) {
+				if(jump.equals("JMP") && address == pc - 1) {
+					return ram;
+				}
+				pc = address & 0x7FFF;
+			} else {
+				pc++;
+			}
+		}
+		throw new IllegalStateException("the program didn't halt within " + MAX_STEPS + " steps");
+	}
+
+	private static int compute(String comp, int A, int D, int M) {
+		String operand = comp.contains("M") ? "M" : "A";
+		int y = comp.contains("M") ? M : A;
+		switch(comp.replace(operand, "Y")) {
+		case("0"): return 0;
+		case("1"): return 1;
+		case("-1"): return -1;
+		case("D"): return D;
+		case("Y"): return y;
+		case("!D"): return ~D;
+		case("!Y"): return ~y;
+		case("-D"): return -D;
+		case("-Y"): return -y;
+		case("D+1"): return D + 1;
+		case("Y+1"): return y + 1;
+		case("D-1"): return D - 1;
+		case("Y-1"): return y - 1;
+		case("D+Y"): return D + y;
+		case("D-Y"): return D - y;
+		case("Y-D"): return y - D;
+		case("D&Y"): return D & y;
+		case("D|Y"): return D | y;
+		default: throw new IllegalArgumentException("Invalid computation '" + comp + "'");
+		}
+	}
+
+	private static boolean jumps(String jump, short result) {
+		switch(jump) {
+		case(""): return false;
+		case("JGT"): return result > 0;
+		case("JEQ"): return result == 0;
+		case("JGE"): return result >= 0;
+		case("JLT"): return result < 0;
+		case("JNE"): return result != 0;
+		case("JLE"): return result <= 0;
+		default: return true;
+		}
+	}
+
+	private static void check(String name, boolean condition, String message) {
+		if(!condition) {
+			failures++;
+			System.out.println("FAILED " + name + ": " + message);
+		}
+	}
+}